@@ -0,0 +1,92 @@
+package blog.peterobrien.jdbc.autorest;
+
+import oracle.dbtools.plugin.api.di.annotations.ApplicationScoped;
+import oracle.dbtools.plugin.api.di.annotations.Provides;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs asynchronous requests away from the container threads. On Java 21 or later each request has its own virtual
+ * thread, found by reflection so that the plugin still runs on Java 17, otherwise a platform thread from a cached
+ * pool. Either way the number of requests running at the same time is bounded and a request above the bound is
+ * rejected rather than queued.
+ */
+@ApplicationScoped
+@Provides
+public class AsyncExecutor {
+
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile Executor executor;
+
+    public AsyncExecutor() {
+    }
+
+    /**
+     * For tests, run tasks on the given executor.
+     */
+    AsyncExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Run the task if fewer than maxConcurrent tasks are running.
+     * @return false if the task was rejected
+     */
+    boolean execute(final Runnable task, final int maxConcurrent) {
+        if (running.incrementAndGet() > maxConcurrent) {
+            running.decrementAndGet();
+            return false;
+        }
+        try {
+            executor().execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            running.decrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of tasks running
+     */
+    int running() {
+        return running.get();
+    }
+
+    private Executor executor() {
+        Executor current = executor;
+        if (current == null) {
+            synchronized (this) {
+                current = executor;
+                if (current == null) {
+                    current = newExecutor();
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            final AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                final Thread thread = new Thread(task, "autorest-async-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * The response of an asynchronous request, written by the request thread while the container may time the request
+ * out. Once {@link #timeout()} has been called nothing more reaches the response from the request thread, which may
+ * still be running. The timeout does not wait for a write in progress, which may be blocked on a slow client, and
+ * the 503 is only sent by {@link #sendTimeout()} once the request thread has stopped writing.
+ */
+class AsyncResponse extends HttpServletResponseWrapper {
+	AsyncResponse(final HttpServletResponse response) {
+		super(response);
+	}
+
+	/**
+	 * Stop the request writing to the response.
+	 */
+	void timeout() {
+		timedOut.set(true);
+	}
+
+	/**
+	 * Answer 503 if none of the response has been sent. Only called once the request thread has stopped writing.
+	 */
+	void sendTimeout() throws IOException {
+		if (!getResponse().isCommitted()) {
+			((HttpServletResponse) getResponse()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+					"Request timed out");
+		}
+	}
+
+	boolean isTimedOut() {
+		return timedOut.get();
+	}
+
+	private void checkTimedOut() throws IOException {
+		if (timedOut.get()) {
+			throw new IOException("Request timed out");
+		}
+	}
+
+	@Override
+	public void sendError(final int status, final String message) throws IOException {
+		checkTimedOut();
+		super.sendError(status, message);
+	}
+
+	@Override
+	public void sendError(final int status) throws IOException {
+		checkTimedOut();
+		super.sendError(status);
+	}
+
+	@Override
+	public void setStatus(final int status) {
+		if (!timedOut.get()) {
+			super.setStatus(status);
+		}
+	}
+
+	@Override
+	public void setHeader(final String name, final String value) {
+		if (!timedOut.get()) {
+			super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(final String name, final String value) {
+		if (!timedOut.get()) {
+			super.addHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setContentType(final String type) {
+		if (!timedOut.get()) {
+			super.setContentType(type);
+		}
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("getWriter() has already been called");
+		}
+		if (outputStream == null) {
+			checkTimedOut();
+			final ServletOutputStream out = getResponse().getOutputStream();
+			outputStream = new ServletOutputStream() {
+				@Override
+				public void write(final int b) throws IOException {
+					checkTimedOut();
+					out.write(b);
+				}
+
+				@Override
+				public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+					checkTimedOut();
+					out.write(bytes, offset, length);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					checkTimedOut();
+					out.flush();
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (!timedOut.get()) {
+						out.close();
+					}
+				}
+
+				@Override
+				public boolean isReady() {
+					return out.isReady();
+				}
+
+				@Override
+				public void setWriteListener(final WriteListener writeListener) {
+					out.setWriteListener(writeListener);
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.forName(getCharacterEncoding())));
+		}
+		return writer;
+	}
+
+	/**
+	 * Write anything held in the writer before the request completes.
+	 */
+	void finish() {
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	private final AtomicBoolean timedOut = new AtomicBoolean();
+	private ServletOutputStream outputStream;
+	private PrintWriter writer;
+}
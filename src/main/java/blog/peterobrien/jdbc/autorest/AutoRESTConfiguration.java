@@ -0,0 +1,92 @@
+package blog.peterobrien.jdbc.autorest;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import oracle.dbtools.plugin.api.di.annotations.Provides;
+
+/**
+ * The pool settings declared in {@link AutoRESTSettings}, parsed once per request rather than at each point of use.
+ */
+@Provides
+public class AutoRESTConfiguration {
+	/**
+	 * The configuration used when settings are not available, for example in unit tests.
+	 */
+	static final AutoRESTConfiguration DEFAULTS = new AutoRESTConfiguration(
+			AutoRESTSettings._AUTOREST_BULK_BATCH_SIZE.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_EXPORT_FETCH_SIZE.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_COMPRESSION_THRESHOLD.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_WARMUP_ENABLED.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_LOB_LINKS.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_ASYNC_ENABLED.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_ASYNC_TIMEOUT.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_ASYNC_MAX_CONCURRENT.defaultValue().toString(),
+			AutoRESTSettings._AUTOREST_COALESCE_ENABLED.defaultValue().toString());
+
+	@Inject
+	AutoRESTConfiguration(final @Named(AutoRESTSettings.AUTOREST_BULK_BATCH_SIZE) String bulkBatchSize,
+			final @Named(AutoRESTSettings.AUTOREST_EXPORT_FETCH_SIZE) String exportFetchSize,
+			final @Named(AutoRESTSettings.AUTOREST_COMPRESSION_THRESHOLD) String compressionThreshold,
+			final @Named(AutoRESTSettings.AUTOREST_WARMUP_ENABLED) String warmUp,
+			final @Named(AutoRESTSettings.AUTOREST_LOB_LINKS) String lobLinks,
+			final @Named(AutoRESTSettings.AUTOREST_ASYNC_ENABLED) String async,
+			final @Named(AutoRESTSettings.AUTOREST_ASYNC_TIMEOUT) String asyncTimeout,
+			final @Named(AutoRESTSettings.AUTOREST_ASYNC_MAX_CONCURRENT) String asyncMaxConcurrent,
+			final @Named(AutoRESTSettings.AUTOREST_COALESCE_ENABLED) String coalesce) {
+		this.bulkBatchSize = Math.max(1, Integer.parseInt(bulkBatchSize.trim()));
+		this.exportFetchSize = Math.max(1, Integer.parseInt(exportFetchSize.trim()));
+		this.compressionThreshold = Integer.parseInt(compressionThreshold.trim());
+		this.warmUp = Boolean.parseBoolean(warmUp.trim());
+		this.lobLinks = Boolean.parseBoolean(lobLinks.trim());
+		this.async = Boolean.parseBoolean(async.trim());
+		this.asyncTimeout = Math.max(1, Long.parseLong(asyncTimeout.trim()));
+		this.asyncMaxConcurrent = Math.max(1, Integer.parseInt(asyncMaxConcurrent.trim()));
+		this.coalesce = Boolean.parseBoolean(coalesce.trim());
+	}
+
+	/**
+	 * Number of rows in each batch, and each commit, of a bulk insert.
+	 */
+	final int bulkBatchSize;
+
+	/**
+	 * Number of rows in each fetch from the database when a collection is exported.
+	 */
+	final int exportFetchSize;
+
+	/**
+	 * Responses up to this many bytes are not compressed. Negative if compression is disabled.
+	 */
+	final int compressionThreshold;
+
+	/**
+	 * Validate every resource and prime the caches when readiness is checked for a pool and database user.
+	 */
+	final boolean warmUp;
+
+	/**
+	 * Write LOB columns of an item as links to their content rather than the content itself.
+	 */
+	final boolean lobLinks;
+
+	/**
+	 * Service requests on an {@link AsyncExecutor} thread rather than the container thread.
+	 */
+	final boolean async;
+
+	/**
+	 * Milliseconds before an asynchronous request is cancelled, and the longest a coalesced request waits for the
+	 * response of another.
+	 */
+	final long asyncTimeout;
+
+	/**
+	 * Number of asynchronous requests serviced at the same time.
+	 */
+	final int asyncMaxConcurrent;
+
+	/**
+	 * Send identical GET requests in progress at the same time the response of one query.
+	 */
+	final boolean coalesce;
+}
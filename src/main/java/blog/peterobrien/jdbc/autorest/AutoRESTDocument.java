@@ -0,0 +1,71 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.swagger.v3.oas.models.OpenAPI;
+
+/**
+ * An OpenAPI document compiled for servicing AutoREST requests. Everything that can be derived from the document
+ * alone is derived once, when the document is loaded, rather than on each request.
+ */
+public class AutoRESTDocument {
+	private static final ObjectMapper JSON = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+	private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory())
+			.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+	/**
+	 * The number of server URLs, for example for different host names, for which the document is kept rendered.
+	 */
+	static final int RENDERED_URLS = 16;
+
+	public AutoRESTDocument(final OpenAPI openAPI) {
+		this.openAPI = openAPI;
+		final List<String> invalid = new ArrayList<String>();
+		this.routes = new RouteMatcher(openAPI, invalid);
+		this.problems = Collections.unmodifiableList(invalid);
+		this.tree = JSON.valueToTree(openAPI);
+	}
+
+	/**
+	 * The document with the URL of the first server replaced, rendered the first time it is requested for the URL.
+	 * The shared OpenAPI model is not modified.
+	 * @param json true for JSON, false for YAML
+	 */
+	RenderedDocument rendered(final String serverURL, final boolean json) {
+		return rendered.get(new Rendition(serverURL, json), k -> {
+			final ObjectNode document = this.tree.deepCopy();
+			final JsonNode servers = document.get("servers");
+			if (servers != null && servers.size() > 0 && servers.get(0).isObject()) {
+				((ObjectNode) servers.get(0)).put("url", serverURL);
+			}
+			try {
+				return json ? new RenderedDocument(JSON.writeValueAsBytes(document), "application/json")
+						: new RenderedDocument(YAML.writeValueAsBytes(document), "application/yaml");
+			} catch (JsonProcessingException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private record Rendition(String serverURL, boolean json) {
+	}
+
+	final OpenAPI openAPI;
+	final RouteMatcher routes;
+	/**
+	 * Invalid x-autorest definitions found when the document was loaded. Those operations are not serviced.
+	 */
+	final List<String> problems;
+	private final ObjectNode tree;
+	private final Cache<Rendition, RenderedDocument> rendered = Caffeine.newBuilder().maximumSize(RENDERED_URLS).build();
+}
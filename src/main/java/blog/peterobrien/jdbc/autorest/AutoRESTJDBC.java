@@ -1,5 +1,6 @@
 package blog.peterobrien.jdbc.autorest;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -7,59 +8,72 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import oracle.dbtools.plugin.api.logging.Log;
 
-public class AutoRESTJDBC {
+/**
+ * Services AutoREST requests for a database connection. Statements and result sets created by an instance are
+ * owned by its {@link ResourceScope} and are closed when the instance is closed, after the response is written.
+ */
+public class AutoRESTJDBC implements AutoCloseable {
 
 	final Connection connection;
 	final Log log;
 	final String schema;
+	final String pool;
+	final MetadataCache metadataCache;
+	final ResourceScope scope = new ResourceScope();
+	final int exportFetchSize;
+	/**
+	 * Set when auto commit is turned off for an export and restored on close.
+	 */
+	private boolean restoreAutoCommit;
+	/**
+	 * The queries each result set was opened from, for the plan kept with them.
+	 */
+	private final Map<ResultSet, SqlTemplates.Select> selects = new IdentityHashMap<ResultSet, SqlTemplates.Select>();
 
 	public AutoRESTJDBC(Connection connection, final Log log) {
+		this(connection, log, new MetadataCache());
+	}
+
+	public AutoRESTJDBC(Connection connection, final Log log, final MetadataCache metadataCache) {
+		this(connection, log, metadataCache, AutoRESTConfiguration.DEFAULTS);
+	}
+
+	public AutoRESTJDBC(Connection connection, final Log log, final MetadataCache metadataCache,
+			final AutoRESTConfiguration configuration) {
 		this.log = log;
+		this.exportFetchSize = configuration.exportFetchSize;
 		this.connection = connection;
+		this.metadataCache = metadataCache;
 		String connSchema = null;
+		String connURL = null;
 
 		try {
 			connSchema = connection.getSchema();
 			if (connSchema == null || connSchema.isEmpty()) {
 				connSchema = connection.getMetaData().getUserName(); // Fallback if schema is unavailable
 			}
+			connURL = connection.getMetaData().getURL();
 		} catch (SQLException e) {
 			log.severe(e);
 		}
 		this.schema = connSchema;
+		this.pool = connURL;
 	}
 
-	private Object delete(ServiceDefinition sd, String objectType,
-			PrimaryKeyStructure pkStructure, Map<String, Object> values) {
-		if (!isActionable(objectType, pkStructure, values)) {
+	private Object delete(ServiceDefinition sd, ObjectMetadata metadata, Map<String, Object> values) {
+		if (!isActionable(metadata, values)) {
 			return null;
 		}
 		
-		final StringBuilder deleteStmt = new StringBuilder();
-		deleteStmt.append("delete from ");
-		if (sd.owner != null) {
-			deleteStmt.append(sd.owner);
-			deleteStmt.append(".");
-		}
-		deleteStmt.append(sd.identifier);
-		deleteStmt.append(" where ");
-
-		for (PKElement pk: pkStructure.elements) {
-			deleteStmt.append(pk.columnName + " = ?,");
-		}
-		deleteStmt.deleteCharAt(deleteStmt.length() -1);
-		
-		try (PreparedStatement deleteStatement = connection.prepareStatement(deleteStmt.toString())) {
-	    	int keyCounter = 1;
-			for (PKElement pk: pkStructure.elements) {
-				deleteStatement.setObject(keyCounter, values.get(pk.columnName));
-				keyCounter++;
-			}
+		try (PreparedStatement deleteStatement = scope.register(connection.prepareStatement(metadata.templates.delete))) {
+			bindKey(deleteStatement, 1, metadata.pkStructure, values);
 			return deleteStatement.executeUpdate();
 			
 		} catch (SQLException e) {
@@ -68,7 +82,13 @@ public class AutoRESTJDBC {
         return 0;
 	}
 
-	private Object get(ServiceDefinition sd, String objectType, final PrimaryKeyStructure pkStructure, final Map<String, Object> values) {
+	/**
+	 * @param values the request parameters, which for a collection always include the limit and, unless the request
+	 * is for an export or a keyset page, the offset
+	 */
+	private Object get(ServiceDefinition sd, ObjectMetadata metadata, final Map<String, Object> values) {
+		final PrimaryKeyStructure pkStructure = metadata.pkStructure;
+		List<String> fields = fields(metadata, values);
 		if (pkStructure != null && values != null && sd.queryType == SupportedQueryType.ITEM) {
 			for (PKElement pk: pkStructure.elements) {
 				if (!values.containsKey(pk.columnName)) {
@@ -77,102 +97,181 @@ public class AutoRESTJDBC {
 				}
 			}
 
-			return getItem(sd, pkStructure, values);
+			return getItem(metadata, values, metadata.templates.select(fields));
+		}
+		final QueryFilter filter = (values.get("q") == null) ? null : QueryFilter.compile(values.get("q").toString(), metadata);
+		final SqlTemplates.Select select;
+		if (Boolean.TRUE.equals(values.get("export"))) {
+			select = metadata.templates.select(fields, (filter == null) ? null : filter.condition);
+			return getCollectionExport(metadata, select, filter);
+		}
+		if (Boolean.TRUE.equals(values.get("keyset"))) {
+			if (fields != null) {
+				// The continuation token is made from the primary key of the last row
+				final List<String> keyedFields = new ArrayList<String>(fields);
+				for (String keyColumn : metadata.templates.keyColumns) {
+					if (!keyedFields.contains(keyColumn)) {
+						keyedFields.add(keyColumn);
+					}
+				}
+				fields = List.copyOf(keyedFields);
+			}
+			select = metadata.templates.select(fields, (filter == null) ? null : filter.condition);
+			return getCollectionAfter(Integer.valueOf(values.get("limit").toString()), (Object[]) values.get("after"), metadata,
+					select, filter);
 		}
-		return getCollection(Integer.valueOf(values.get("limit").toString()), Integer.valueOf(values.get("offset").toString()), sd, pkStructure);
+		select = metadata.templates.select(fields, (filter == null) ? null : filter.condition);
+		return getCollection(Integer.valueOf(values.get("limit").toString()), Integer.valueOf(values.get("offset").toString()), metadata,
+				select, filter);
 	}
 
-	private Object getCollection(int limit, int offset, ServiceDefinition sd, final PrimaryKeyStructure pkStructure) {
-		final StringBuilder queryStmt = new StringBuilder();
-		queryStmt.append("select * from ");
-		if (sd.owner != null) {
-			queryStmt.append(sd.owner);
-			queryStmt.append(".");
+	/**
+	 * The columns requested with the fields parameter, or null for every column.
+	 * @throws IllegalArgumentException if a field is not a column of the object.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<String> fields(final ObjectMetadata metadata, final Map<String, Object> values) {
+		final Object fields = (values == null) ? null : values.get("fields");
+		if (fields == null) {
+			return null;
 		}
-		queryStmt.append(sd.identifier);
-		
-		if (pkStructure != null) {
-			queryStmt.append(" order by ");
-			for (PKElement pk: pkStructure.elements) {
-				queryStmt.append(pk.columnName);
-				queryStmt.append(",");
-			}
-			queryStmt.deleteCharAt(queryStmt.length() -1);
+		return metadata.columns((List<String>) fields);
+	}
+
+	/**
+	 * Keyset pagination. Query the rows which follow the primary key value of the last row of the previous page,
+	 * using the primary key index rather than skipping rows. One more row than the limit is queried so that the
+	 * caller can tell if there are more rows.
+	 * @param after the primary key value of the last row of the previous page, or null for the first page.
+	 * @param filter the rows to include, or null for every row.
+	 * @throws IllegalArgumentException if the object does not have a primary key or the key value does not match it.
+	 */
+	private Object getCollectionAfter(int limit, final Object[] after, final ObjectMetadata metadata,
+			final SqlTemplates.Select select, final QueryFilter filter) {
+		final PrimaryKeyStructure pkStructure = metadata.pkStructure;
+		if (select.collectionAfter == null) {
+			throw new IllegalArgumentException("Keyset pagination requires a primary key on " + metadata.objectName);
 		}
-		
-		paginate(limit, offset, queryStmt);
-		
+		if (after != null && after.length != pkStructure.elements.size()) {
+			throw new IllegalArgumentException("Continuation token does not match the primary key of " + metadata.objectName);
+		}
+		// One more row than the limit, without overflowing when every row is asked for
+		final int rows = Math.min(limit, Integer.MAX_VALUE - 1) + 1;
 		try {
-			return connection.createStatement().executeQuery(queryStmt.toString());
+			if (after == null) {
+				final PreparedStatement selectStatement = scope.register(connection.prepareStatement(select.collection));
+				final int parameterIndex = (filter == null) ? 1 : filter.bind(selectStatement, 1);
+				metadata.templates.dialect.bindPagination(selectStatement, parameterIndex, rows, 0);
+				return query(selectStatement, select);
+			}
+			final PreparedStatement selectStatement = scope.register(connection.prepareStatement(select.collectionAfter));
+			int parameterIndex = (filter == null) ? 1 : filter.bind(selectStatement, 1);
+			final int[] keyTypes = new int[after.length];
+			for (int i = 0; i < keyTypes.length; i++) {
+				keyTypes[i] = metadata.columnType(pkStructure.elements.get(i).columnName);
+			}
+			for (int i = 0; i < after.length; i++) {
+				for (int j = 0; j <= i; j++) {
+					KeysetToken.bind(selectStatement, parameterIndex++, after[j], keyTypes[j]);
+				}
+			}
+			metadata.templates.dialect.bindPagination(selectStatement, parameterIndex, rows, 0);
+			return query(selectStatement, select);
 		} catch (SQLException e) {
 			log.severe(e);
 		}
 		return null;
 	}
 
-	private void paginate(int limit, int offset, final StringBuilder queryStmt) {
+	/**
+	 * Every row of the collection through one forward only cursor, fetching exportFetchSize rows at a time so that
+	 * the rows can be streamed to the client without holding them in memory. Auto commit is turned off until the
+	 * request is complete because some drivers, for example PostgreSQL, only use a cursor inside a transaction.
+	 */
+	private Object getCollectionExport(final ObjectMetadata metadata, final SqlTemplates.Select select,
+			final QueryFilter filter) {
 		try {
-			final String driverName = this.connection.getMetaData().getDriverName();
-			
-			if (driverName.equals("Oracle JDBC driver") || (driverName.startsWith("Microsoft JDBC Driver") && driverName.endsWith("for SQL Server"))) {
-				// Offset and fetch syntax
-				queryStmt.append(" offset ");
-				queryStmt.append(offset);
-				queryStmt.append(" rows fetch next ");
-				queryStmt.append(limit);
-				queryStmt.append(" rows only ");
-			} else {
-				// Limit and offset syntax
-				queryStmt.append(" limit ");
-				queryStmt.append(limit);
-				queryStmt.append(" offset ");
-				queryStmt.append(offset);
+			if (connection.getAutoCommit()) {
+				connection.setAutoCommit(false);
+				restoreAutoCommit = true;
+			}
+			final PreparedStatement selectStatement = scope.register(connection.prepareStatement(select.export,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+			selectStatement.setFetchSize(metadata.templates.dialect.exportFetchSize(exportFetchSize));
+			if (filter != null) {
+				filter.bind(selectStatement, 1);
 			}
+			return query(selectStatement, select);
 		} catch (SQLException e) {
 			log.severe(e);
 		}
+		return null;
 	}
 
-	private Object getItem(ServiceDefinition sd, final PrimaryKeyStructure pkStructure, final Map<String, Object> values) {
-		final StringBuilder queryStmt = new StringBuilder();
-		queryStmt.append("select * from ");
-		if (sd.owner != null) {
-			queryStmt.append(sd.owner);
-			queryStmt.append(".");
+	private Object getCollection(int limit, int offset, final ObjectMetadata metadata, final SqlTemplates.Select select,
+			final QueryFilter filter) {
+		try {
+			final PreparedStatement selectStatement = scope.register(connection.prepareStatement(select.collection));
+			final int parameterIndex = (filter == null) ? 1 : filter.bind(selectStatement, 1);
+			metadata.templates.dialect.bindPagination(selectStatement, parameterIndex, limit, offset);
+			return query(selectStatement, select);
+		} catch (SQLException e) {
+			log.severe(e);
 		}
-		queryStmt.append(sd.identifier);
-		
-		queryStmt.append(" where ");
+		return null;
+	}
 
-		for (PKElement pk: pkStructure.elements) {
-			queryStmt.append(pk.columnName + " = ?,");
-		}
-		queryStmt.deleteCharAt(queryStmt.length() -1);
-		
+	private Object getItem(final ObjectMetadata metadata, final Map<String, Object> values) {
+		return getItem(metadata, values, metadata.templates.select(null));
+	}
+
+	private Object getItem(final ObjectMetadata metadata, final Map<String, Object> values, final SqlTemplates.Select select) {
 		try {
-	        PreparedStatement selectStatement = connection.prepareStatement(queryStmt.toString());
-	    	int keyCounter = 1;
-			for (PKElement pk: pkStructure.elements) {
-				selectStatement.setObject(keyCounter, values.get(pk.columnName));
-				keyCounter++;
-			}
-	        return selectStatement.executeQuery();
+	        PreparedStatement selectStatement = scope.register(connection.prepareStatement(select.item));
+	        bindKey(selectStatement, 1, metadata.pkStructure, values);
+	        return query(selectStatement, select);
 		} catch (SQLException e) {
 			log.severe(e);
 		}
 		return null;
 	}
 
-	private boolean isActionable(String objectType, PrimaryKeyStructure pkStructure, final Map<String, Object> values) {
-		if (!objectType.equals("TABLE")) {
-			System.out.println("Data manipulation only available for database objects of type TABLE");
-			return false;
+	/**
+	 * Run one of the queries of a {@link SqlTemplates.Select}, remembering which for {@link #rowCodec(ResultSet)}.
+	 */
+	private ResultSet query(final PreparedStatement statement, final SqlTemplates.Select select) throws SQLException {
+		final ResultSet resultSet = scope.register(statement.executeQuery());
+		selects.put(resultSet, select);
+		return resultSet;
+	}
+
+	/**
+	 * The plan for writing the rows of a result set. A result set of one of the queries of a
+	 * {@link SqlTemplates.Select} uses the plan kept with the queries, which is made once for the select list, any
+	 * other result set gets a plan of its own.
+	 */
+	RowCodec rowCodec(final ResultSet resultSet) throws SQLException {
+		final SqlTemplates.Select select = selects.get(resultSet);
+		return (select == null) ? RowCodec.of(resultSet.getMetaData()) : select.rowCodec(resultSet.getMetaData());
+	}
+
+	/**
+	 * Bind the primary key values starting at the parameter index.
+	 */
+	private static void bindKey(final PreparedStatement statement, final int parameterIndex,
+			final PrimaryKeyStructure pkStructure, final Map<String, Object> values) throws SQLException {
+		int keyCounter = parameterIndex;
+		for (PKElement pk: pkStructure.elements) {
+			bind(statement, keyCounter, values, pk.columnName);
+			keyCounter++;
 		}
-		if (pkStructure == null) {
-			System.out.println("Table does not have a primary key defined.");
+	}
+
+	private boolean isActionable(ObjectMetadata metadata, final Map<String, Object> values) {
+		if (!isWritable(metadata)) {
 			return false;
 		}
-		for (PKElement pk: pkStructure.elements) {
+		for (PKElement pk: metadata.pkStructure.elements) {
 			if (!values.containsKey(pk.columnName)) {
 				log.fine("No value provided for Primary Key field " + pk.columnName);
 				return false;
@@ -181,58 +280,75 @@ public class AutoRESTJDBC {
 		return true;
 	}
 
-	private Object post(ServiceDefinition sd, String objectType,
-			PrimaryKeyStructure pkStructure, final Map<String, Object> values) {
-		if (!isActionable(objectType, pkStructure, values)) {
+	/**
+	 * Rows can only be inserted, updated or deleted in tables with a primary key. Key values may be left out of an
+	 * insert when the database generates them.
+	 */
+	private boolean isWritable(ObjectMetadata metadata) {
+		if (!metadata.objectType.equals("TABLE")) {
+			log.fine("Data manipulation only available for database objects of type TABLE: " + metadata.objectName);
+			return false;
+		}
+		if (metadata.pkStructure == null) {
+			log.fine("Table " + metadata.objectName + " does not have a primary key defined.");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Insert the row and return the inserted row in the same round trip where the dialect allows it. PostgreSQL,
+	 * SQL Server and DB2 insert through a query, Oracle returns every column as a generated key, MySQL builds the row
+	 * from the bound values and the generated keys and other databases select the row by its key.
+	 */
+	private Object post(ServiceDefinition sd, ObjectMetadata metadata, final Map<String, Object> values) {
+		if (!isWritable(metadata) || values.isEmpty()) {
 			return null;
 		}
-		
-		final StringBuilder insertStmt = new StringBuilder();
-		insertStmt.append("insert into ");
-		if (sd.owner != null) {
-			insertStmt.append(sd.owner);
-			insertStmt.append(".");
-		}
-		insertStmt.append(sd.identifier);
-		insertStmt.append(" (");
-		insertStmt.append(String.join(", ", values.keySet()));
-		insertStmt.append(") values (");
-		insertStmt.append("?,".repeat(values.size() - 1));
-		insertStmt.append("?)");
-		
-		try (PreparedStatement insertStatement = connection.prepareStatement(insertStmt.toString(), Statement.RETURN_GENERATED_KEYS);) {
-			final Object[] valuesAsArray = values.values().toArray();
-			for (int i = 0; i < values.size(); i++) {
-                insertStatement.setObject(i + 1, valuesAsArray[i]);
-            }
+
+		final SqlTemplates templates = metadata.templates;
+		final List<String> columns = List.copyOf(values.keySet());
+		try {
+			final String insertReturning = templates.dialect.supportsReturning() ? templates.insertReturning(columns) : null;
+			if (insertReturning != null) {
+				final PreparedStatement insertStatement = scope.register(connection.prepareStatement(insertReturning));
+				bindColumns(insertStatement, columns, values);
+				return scope.register(insertStatement.executeQuery());
+			}
+
+			final PreparedStatement insertStatement = scope.register(templates.dialect.supportsReturning()
+					? connection.prepareStatement(templates.insert(columns), metadata.columnNames())
+					: connection.prepareStatement(templates.insert(columns), Statement.RETURN_GENERATED_KEYS));
+			bindColumns(insertStatement, columns, values);
 			int rowsAffected = insertStatement.executeUpdate();
-            if (rowsAffected == 0) {
-                throw new SQLException("Insertion failed, no rows affected.");
-            }
-            // Retrieve the generated keys (primary key for the new row)
-            try (ResultSet generatedKeys = insertStatement.getGeneratedKeys()) {
-            		final StringBuilder queryStmt = new StringBuilder();
-            		queryStmt.append("select * from ");
-            		if (sd.owner != null) {
-            			queryStmt.append(sd.owner);
-            			queryStmt.append(".");
-            		}
-            		queryStmt.append(sd.identifier);
-            		queryStmt.append(" where ");
-
-            		for (PKElement pk: pkStructure.elements) {
-            			queryStmt.append(pk.columnName + " = ?,");
-            		}
-            		queryStmt.deleteCharAt(queryStmt.length() -1);
-            		
-                    PreparedStatement selectStatement = connection.prepareStatement(queryStmt.toString());
-                    	int keyCounter = 1;
-                    	while (generatedKeys.next()) {
-                    		selectStatement.setObject(keyCounter,  generatedKeys.getObject(1));
-                    		keyCounter++;
-                    	}
-                        return selectStatement.executeQuery();
-            }
+			if (rowsAffected == 0) {
+				throw new SQLException("Insertion failed, no rows affected.");
+			}
+			final ResultSet generatedKeys = scope.register(insertStatement.getGeneratedKeys());
+			if (templates.dialect.supportsReturning()) {
+				return generatedKeys;
+			}
+
+			// Combine the bound values with the generated keys for the new row
+			final Map<String, Object> row = new LinkedHashMap<String, Object>(values);
+			if (generatedKeys.next()) {
+				int generatedIndex = 1;
+				for (PKElement pk: metadata.pkStructure.elements) {
+					if (!row.containsKey(pk.columnName)) {
+						row.put(pk.columnName, generatedKeys.getObject(generatedIndex++));
+					}
+				}
+			}
+			for (PKElement pk: metadata.pkStructure.elements) {
+				if (!row.containsKey(pk.columnName)) {
+					log.fine("No value provided or generated for Primary Key field " + pk.columnName);
+					return null;
+				}
+			}
+			if (templates.dialect.insertedRowFromValues()) {
+				return row;
+			}
+			return this.getItem(metadata, row);
 		} catch (SQLException e) {
 			log.severe(e);
 		}
@@ -240,61 +356,126 @@ public class AutoRESTJDBC {
 		return null;
 	}
 
-	private Object put(ServiceDefinition sd, String objectType,
-			PrimaryKeyStructure pkStructure, Map<String, Object> values) {
-		if (!isActionable(objectType, pkStructure, values)) {
+	private static void bindColumns(final PreparedStatement statement, final List<String> columns,
+			final Map<String, Object> values) throws SQLException {
+		for (int i = 0; i < columns.size(); i++) {
+			bind(statement, i + 1, values, columns.get(i));
+		}
+	}
+
+	/**
+	 * Bind a value from the request with the setter for the type of its column when the row was read as a
+	 * {@link TypedRow}, otherwise leave the driver to infer the type.
+	 */
+	private static void bind(final PreparedStatement statement, final int parameterIndex,
+			final Map<String, Object> values, final String column) throws SQLException {
+		if (values instanceof TypedRow) {
+			((TypedRow) values).bind(statement, parameterIndex, column);
+		} else {
+			statement.setObject(parameterIndex, values.get(column));
+		}
+	}
+
+	/**
+	 * Insert the rows using JDBC batches of up to batchSize rows. Each batch is committed when it is executed so a
+	 * failure only rolls back the rows of the current batch and no further rows are read.
+	 * @return the summary of the batches or null if the object is not visible to the database user.
+	 * @throws IllegalArgumentException if the object is not a TABLE.
+	 */
+	public BulkInsertSummary bulkInsert(final ServiceDefinition sd, final RowReader rows, final int batchSize) throws SQLException {
+		final ObjectMetadata metadata = metadata(sd);
+		if (!metadata.isVisible()) {
 			return null;
 		}
+		if (!metadata.objectType.equals("TABLE")) {
+			throw new IllegalArgumentException("Data manipulation only available for database objects of type TABLE");
+		}
+
+		final BulkInsertSummary summary = new BulkInsertSummary();
+		// Rows in a batch may not all provide the same columns so there is a statement for each set of columns
+		final Map<List<String>, PreparedStatement> statements = new LinkedHashMap<List<String>, PreparedStatement>();
+		final boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		int chunkRows = 0;
+		try {
+			Map<String, Object> row;
+			while ((row = rows.next()) != null) {
+				final List<String> columns = List.copyOf(row.keySet());
+				PreparedStatement insertStatement = statements.get(columns);
+				if (insertStatement == null) {
+					insertStatement = scope.register(connection.prepareStatement(metadata.templates.insert(columns)));
+					statements.put(columns, insertStatement);
+				}
+				bindColumns(insertStatement, columns, row);
+				insertStatement.addBatch();
+				chunkRows++;
+				if (chunkRows == batchSize) {
+					executeBatches(statements);
+					summary.committed(chunkRows);
+					chunkRows = 0;
+				}
+			}
+			if (chunkRows > 0) {
+				executeBatches(statements);
+				summary.committed(chunkRows);
+			}
+		} catch (SQLException | IOException e) {
+			log.severe(e);
+			summary.rolledBack(chunkRows, e.getMessage());
+			try {
+				connection.rollback();
+			} catch (SQLException rollbackFailure) {
+				// The chunk was not committed either way, so the summary stands
+				log.severe(rollbackFailure);
+			}
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+		return summary;
+	}
+
+	private void executeBatches(final Map<List<String>, PreparedStatement> statements) throws SQLException {
+		for (PreparedStatement insertStatement : statements.values()) {
+			insertStatement.executeBatch();
+		}
+		connection.commit();
+	}
+
+	private Object put(ServiceDefinition sd, ObjectMetadata metadata, Map<String, Object> values) {
+		if (!isActionable(metadata, values)) {
+			return null;
+		}
+		if (metadata.templates.dialect.supportsUpsert()) {
+			return upsert(metadata, values);
+		}
 		
-		try (ResultSet getItemRS = (ResultSet) this.getItem(sd, pkStructure, values)) {
+		final PrimaryKeyStructure pkStructure = metadata.pkStructure;
+		try (ResultSet getItemRS = (ResultSet) this.getItem(metadata, values)) {
 			if (getItemRS.next()) {
 				//Update
-				final List<Object> updateValues = new ArrayList<Object>();
-				
-				
-				final StringBuilder updateStmt = new StringBuilder();
-				updateStmt.append("update ");
-				if (sd.owner != null) {
-					updateStmt.append(sd.owner);
-					updateStmt.append(".");
-				}
-				updateStmt.append(sd.identifier);
-				updateStmt.append(" set ");
-				
+				final List<String> updateColumns = new ArrayList<String>();
 				for (String key: values.keySet()) {
 					if (!pkStructure.isKeyColumn(key)) {
-						updateStmt.append(key + " = ?,");
-						updateValues.add(values.get(key));
+						updateColumns.add(key);
 					}
 				}
-				updateStmt.deleteCharAt(updateStmt.length() -1);
-				updateStmt.append(" where ");
 
-				for (PKElement pk: pkStructure.elements) {
-					updateStmt.append(pk.columnName + " = ?,");
-				}
-				updateStmt.deleteCharAt(updateStmt.length() -1);
-
-				try (PreparedStatement updateStatement = connection.prepareStatement(updateStmt.toString());) {
+				try (PreparedStatement updateStatement = scope.register(connection.prepareStatement(metadata.templates.update(List.copyOf(updateColumns))));) {
 					// Set the new values
-					for (int i = 0; i < updateValues.size(); i++) {
-						updateStatement.setObject(i + 1, updateValues.get(i));
-		            }
+					bindColumns(updateStatement, updateColumns, values);
 					
 					// Set PK values
-					for (int i = 0; i < pkStructure.elements.size(); i++) {
-						updateStatement.setObject(i + updateValues.size() + 1, values.get(pkStructure.elements.get(i).columnName));
-		            }
+					bindKey(updateStatement, updateColumns.size() + 1, pkStructure, values);
 					
 					int rowsAffected = updateStatement.executeUpdate();
 		            if (rowsAffected == 0) {
 		                throw new SQLException("Update failed, no rows affected.");
 		            }
-		            return this.getItem(sd, pkStructure, values);
+		            return this.getItem(metadata, values);
 				}
 			} else {
 				//Insert
-				return post(sd, objectType, pkStructure, values);
+				return post(sd, metadata, values);
 			}
 			
 		} catch (SQLException e) {
@@ -304,52 +485,173 @@ public class AutoRESTJDBC {
 		return null;
 	}
 
-	public Object service(final ServiceDefinition sd, final SupportedAction action, final Map<String, Object> values) {
-
+	/**
+	 * Insert or update the row with a single statement so that concurrent requests for the same key can not both
+	 * insert. The row is returned by the same statement when the dialect allows it, otherwise it is selected.
+	 */
+	private Object upsert(final ObjectMetadata metadata, final Map<String, Object> values) {
+		final SqlTemplates templates = metadata.templates;
+		final List<String> columns = List.copyOf(values.keySet());
 		try {
-			final DatabaseMetaData dbMetadata = connection.getMetaData();
-			String schemaPattern = sd.owner;
-			String tableNamePattern = sd.identifier;
-			
-			// Check that the database user has access to the object
-			try (ResultSet resultSet = dbMetadata.getTables(null, schemaPattern, tableNamePattern, sd.type.toStringArray());) {
-				if (resultSet.next()) {
-					String objectType = resultSet.getString("TABLE_TYPE");
-					String objectName = resultSet.getString("TABLE_NAME");
-					PrimaryKeyStructure pkStructure = null;
-					if (objectType.equalsIgnoreCase("TABLE")) {
-						try (ResultSet pkResultSet = dbMetadata.getPrimaryKeys(null, schemaPattern, objectName)) {
-							pkStructure = new PrimaryKeyStructure(pkResultSet);
+			final PreparedStatement upsertStatement = scope.register(connection.prepareStatement(templates.upsert(columns)));
+			bindColumns(upsertStatement, columns, values);
+			if (templates.dialect.upsertReturnsRow()) {
+				return scope.register(upsertStatement.executeQuery());
+			}
+			upsertStatement.executeUpdate();
+			return this.getItem(metadata, values);
+		} catch (SQLException e) {
+			log.severe(e);
+		}
+		return null;
+	}
+
+	/**
+	 * The total number of rows in a collection, for the totalResults parameter of a GET.
+	 * @param mode <code>exact</code> counts the rows matching the filter, <code>estimated</code> reads the optimizer
+	 * statistics for the table, cached in the {@link MetadataCache}, and <code>none</code> skips the total.
+	 * @param q the filter, or null. A filtered collection is always counted because statistics describe the table.
+	 * @return the total, or null if it is not requested, the object is not visible or there are no statistics.
+	 * @throws IllegalArgumentException if the mode or filter is not valid.
+	 */
+	public Long totalResults(final ServiceDefinition sd, final String mode, final String q) throws SQLException {
+		if (mode == null || mode.equals("none")) {
+			return null;
+		}
+		if (!mode.equals("exact") && !mode.equals("estimated")) {
+			throw new IllegalArgumentException("totalResults must be exact, estimated or none");
+		}
+		final ObjectMetadata metadata = metadata(sd);
+		if (!metadata.isVisible()) {
+			return null;
+		}
+		final QueryFilter filter = (q == null) ? null : QueryFilter.compile(q, metadata);
+		if (mode.equals("estimated") && filter == null) {
+			return estimate(sd, metadata);
+		}
+		final SqlTemplates.Select select = metadata.templates.select(null, (filter == null) ? null : filter.condition);
+		final PreparedStatement countStatement = scope.register(connection.prepareStatement(select.count));
+		if (filter != null) {
+			filter.bind(countStatement, 1);
+		}
+		try (ResultSet resultSet = scope.register(countStatement.executeQuery())) {
+			return resultSet.next() ? resultSet.getLong(1) : null;
+		}
+	}
+
+	private Long estimate(final ServiceDefinition sd, final ObjectMetadata metadata) throws SQLException {
+		Long estimate = this.metadataCache.estimate(this.pool, this.schema, sd);
+		if (estimate == null) {
+			estimate = MetadataCache.NO_ESTIMATE;
+			final String rowEstimate = metadata.templates.dialect.rowEstimate();
+			if (rowEstimate != null) {
+				final PreparedStatement estimateStatement = scope.register(connection.prepareStatement(rowEstimate));
+				estimateStatement.setString(1, (sd.owner == null) ? this.schema : sd.owner);
+				estimateStatement.setString(2, metadata.objectName);
+				try (ResultSet resultSet = scope.register(estimateStatement.executeQuery())) {
+					if (resultSet.next()) {
+						final long rows = resultSet.getLong(1);
+						if (!resultSet.wasNull() && rows >= 0) {
+							estimate = rows;
 						}
 					}
-					return service(sd, action, objectType, pkStructure, values);
-				} else {
-					System.out.println("Object " + sd.owner + "." + sd.identifier + " of type " + sd.type
-							+ " is not visible to the database user " + schema);
 				}
 			}
+			this.metadataCache.putEstimate(this.pool, this.schema, sd, estimate);
+		}
+		return (estimate == MetadataCache.NO_ESTIMATE) ? null : estimate;
+	}
+
+	/**
+	 * Cancel the statements running for this request, from another thread.
+	 */
+	void cancel() {
+		scope.cancel();
+	}
+
+	/**
+	 * Close the statements and result sets created while servicing requests.
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			scope.close();
+		} finally {
+			if (restoreAutoCommit) {
+				restoreAutoCommit = false;
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		}
+	}
+
+	public Object service(final ServiceDefinition sd, final SupportedAction action, final Map<String, Object> values) {
+
+		try {
+			// Check that the database user has access to the object
+			final ObjectMetadata metadata = metadata(sd);
+			if (metadata.isVisible()) {
+				return service(sd, action, metadata, values);
+			} else {
+				log.fine("Object " + sd.owner + "." + sd.identifier + " of type " + sd.type
+						+ " is not visible to the database user " + schema);
+			}
 		} catch (SQLException e) {
 			log.severe(e);
 		}
 		return null;
 	}
 
-	private Object service(ServiceDefinition sd, SupportedAction action, String objectType, final PrimaryKeyStructure pkStructure, final Map<String, Object> values) {
-		log.fine("AutoRESTJDBC service " + objectType + ": " + sd.identifier);
+	/**
+	 * Load the metadata for the object into the {@link MetadataCache} and prepare the select statement for the
+	 * service so that a driver with a statement cache has it before the first request.
+	 * @return why the object cannot be serviced, or null if it can be
+	 */
+	String prime(final ServiceDefinition sd) {
+		try {
+			final ObjectMetadata metadata = metadata(sd);
+			if (!metadata.isVisible()) {
+				return sd.type + " is not visible to the database user " + schema;
+			}
+			final String select = (sd.queryType == SupportedQueryType.ITEM) ? metadata.templates.selectItem
+					: metadata.templates.selectCollection;
+			connection.prepareStatement(select).close();
+			return null;
+		} catch (SQLException e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Get the dictionary information for the object from the {@link MetadataCache}, querying the database only when
+	 * there is no cached entry for this pool and database user.
+	 */
+	ObjectMetadata metadata(final ServiceDefinition sd) throws SQLException {
+		ObjectMetadata metadata = this.metadataCache.get(this.pool, this.schema, sd);
+		if (metadata == null) {
+			final DatabaseMetaData dbMetadata = connection.getMetaData();
+			metadata = ObjectMetadata.load(dbMetadata, sd, this.metadataCache.dialect(this.pool, dbMetadata));
+			this.metadataCache.put(this.pool, this.schema, sd, metadata);
+		}
+		return metadata;
+	}
+
+	private Object service(ServiceDefinition sd, SupportedAction action, final ObjectMetadata metadata, final Map<String, Object> values) {
+		log.fine("AutoRESTJDBC service " + metadata.objectType + ": " + sd.identifier);
 		Object response = null;
 
 		switch (action) {
 		case GET:
-			response = get(sd, objectType, pkStructure, values);
+			response = get(sd, metadata, values);
 			break;
 		case DELETE:
-			response = delete(sd, objectType, pkStructure, values);
+			response = delete(sd, metadata, values);
 			break;
 		case POST:
-			response = post(sd, objectType, pkStructure, values);
+			response = post(sd, metadata, values);
 			break;
 		case PUT:
-			response = put(sd, objectType, pkStructure, values);
+			response = put(sd, metadata, values);
 			break;
 		default:
 			break;
@@ -1,29 +1,37 @@
 package blog.peterobrien.jdbc.autorest;
 
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URLDecoder;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
-
-import io.swagger.v3.oas.models.OpenAPI;
-import io.swagger.v3.oas.models.Operation;
-import io.swagger.v3.oas.models.PathItem;
-import io.swagger.v3.oas.models.parameters.Parameter;
+
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import oracle.dbtools.plugin.api.di.annotations.Provides;
@@ -43,361 +51,934 @@ import oracle.dbtools.plugin.api.servlet.HttpServletBase;
 @Dispatches({
 		@PathTemplate(value = AutoRESTJDBCServlet.PATH_PREFIX + "/openapi.yaml", methods = {
 				"GET" }, name = "APIDocument"),
+		@PathTemplate(value = AutoRESTJDBCServlet.PATH_PREFIX + "/openapi.json", methods = {
+				"GET" }, name = "APIDocumentJSON"),
+		@PathTemplate(value = AutoRESTJDBCServlet.PATH_PREFIX + "/_/metrics", methods = {
+				"GET" }, name = "Metrics"),
+		@PathTemplate(value = AutoRESTJDBCServlet.PATH_PREFIX + "/_/ready", methods = {
+				"GET" }, name = "Ready"),
 		@PathTemplate(value = AutoRESTJDBCServlet.PATH_PREFIX + "/*", methods = { "GET", "DELETE", "POST",
 				"PUT" }, name = "Service") })
 public class AutoRESTJDBCServlet extends HttpServletBase {
 	@Inject
 	AutoRESTJDBCServlet(final Connection conn, final Log log,
 			final @Named(AutoRESTSettings.AUTOREST_API_DOC) String apidoc, final OpenAPICache openAPICache,
-			final PathTemplates pathTemplates) {
-		this( new AutoRESTJDBC(conn, log), log, apidoc, openAPICache, pathTemplates);
+			final MetadataCache metadataCache, final PathTemplates pathTemplates,
+			final AutoRESTConfiguration configuration, final WarmUp warmUp, final AsyncExecutor asyncExecutor,
+			final RequestCoalescer coalescer) {
+		this( new AutoRESTJDBC(conn, log, metadataCache, configuration), log, apidoc, openAPICache, pathTemplates, configuration, warmUp, asyncExecutor, coalescer);
 	}
 
 	AutoRESTJDBCServlet(final AutoRESTJDBC autoRESTJDBC, final Log log,
 			final @Named(AutoRESTSettings.AUTOREST_API_DOC) String apidoc, final OpenAPICache openAPICache,
 			final PathTemplates pathTemplates) {
+		this(autoRESTJDBC, log, apidoc, openAPICache, pathTemplates, AutoRESTConfiguration.DEFAULTS);
+	}
+
+	AutoRESTJDBCServlet(final AutoRESTJDBC autoRESTJDBC, final Log log,
+			final @Named(AutoRESTSettings.AUTOREST_API_DOC) String apidoc, final OpenAPICache openAPICache,
+			final PathTemplates pathTemplates, final AutoRESTConfiguration configuration) {
+		this(autoRESTJDBC, log, apidoc, openAPICache, pathTemplates, configuration, new WarmUp(log));
+	}
+
+	AutoRESTJDBCServlet(final AutoRESTJDBC autoRESTJDBC, final Log log,
+			final @Named(AutoRESTSettings.AUTOREST_API_DOC) String apidoc, final OpenAPICache openAPICache,
+			final PathTemplates pathTemplates, final AutoRESTConfiguration configuration, final WarmUp warmUp) {
+		this(autoRESTJDBC, log, apidoc, openAPICache, pathTemplates, configuration, warmUp, new AsyncExecutor(),
+				new RequestCoalescer());
+	}
+
+	AutoRESTJDBCServlet(final AutoRESTJDBC autoRESTJDBC, final Log log,
+			final @Named(AutoRESTSettings.AUTOREST_API_DOC) String apidoc, final OpenAPICache openAPICache,
+			final PathTemplates pathTemplates, final AutoRESTConfiguration configuration, final WarmUp warmUp,
+			final AsyncExecutor asyncExecutor, final RequestCoalescer coalescer) {
 		this.autoRESTDelegate = autoRESTJDBC;
+		this.resultSetWriter = new JsonResultSetWriter(autoRESTJDBC::rowCodec);
+		this.asyncExecutor = asyncExecutor;
+		this.coalescer = coalescer;
+		this.warmUp = warmUp;
+		this.configuration = configuration;
 		this.log = log;
-		this.openAPIDocument = openAPICache.getOpenAPIDocument(apidoc);
+		this.document = openAPICache.getAutoRESTDocument(apidoc);
 		this.pathTemplates = pathTemplates;
-        // Exclude null values in YAML output
-        this.yamlMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 	}
 
 	public void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		final ServiceDefinition sd = serviceDefinition(request);
-		if (sd == null) {
-			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+		dispatch(request, response, this::serveDelete);
+	}
+
+	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		dispatch(request, response, this::serveGet);
+	}
+
+	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		dispatch(request, response, this::servePost);
+	}
+
+	public void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		dispatch(request, response, this::servePut);
+	}
+
+	/**
+	 * Service a request with one of the serve methods.
+	 */
+	@FunctionalInterface
+	private interface Handler {
+		void serve(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+	}
+
+	/**
+	 * Service the request on the container thread or, in async mode, on an {@link AsyncExecutor} thread so that the
+	 * container thread is free while the database works. Responses are written with blocking writes on that thread.
+	 * When the request times out its statements are cancelled and 503 is returned if none of the response has been
+	 * sent. When the maximum number of asynchronous requests are running the request is rejected with 503.
+	 * <p>
+	 * In async mode the connection injected for the request is used after doGet, doPost, doPut or doDelete has
+	 * returned. This relies on ORDS holding the connection until the async context is completed, so the request is
+	 * only completed once the request thread has released the connection. On a timeout the container thread waits up
+	 * to {@link #TIMEOUT_GRACE_MILLIS} for the cancelled statement to return, otherwise the request thread completes
+	 * the request when it has released the connection.
+	 */
+	private void dispatch(final HttpServletRequest request, final HttpServletResponse response, final Handler handler)
+			throws ServletException, IOException {
+		if (!this.configuration.async || !request.isAsyncSupported()) {
+			handler.serve(request, response);
 			return;
 		}
-		final Map<String, Object> paramMap = new HashMap<String, Object>();
-		pathParameters(request, sd, paramMap);
-		if (paramMap.isEmpty()) {
-			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+		final AsyncResponse asyncResponse = new AsyncResponse(response);
+		final AsyncContext async = request.startAsync(request, asyncResponse);
+		async.setTimeout(this.configuration.asyncTimeout);
+		final AtomicBoolean completed = new AtomicBoolean();
+		final CountDownLatch released = new CountDownLatch(1);
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(final AsyncEvent event) throws IOException {
+				asyncResponse.timeout();
+				autoRESTDelegate.cancel();
+				try {
+					if (!released.await(TIMEOUT_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+						return;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				if (completed.compareAndSet(false, true)) {
+					complete(async, asyncResponse);
+				}
+			}
+
+			@Override
+			public void onComplete(final AsyncEvent event) {
+			}
+
+			@Override
+			public void onError(final AsyncEvent event) {
+			}
+
+			@Override
+			public void onStartAsync(final AsyncEvent event) {
+			}
+		});
+		final boolean accepted = this.asyncExecutor.execute(() -> {
+			try {
+				if (asyncResponse.isTimedOut()) {
+					release();
+				} else {
+					handler.serve(request, asyncResponse);
+				}
+			} catch (ServletException | IOException | RuntimeException e) {
+				if (!asyncResponse.isTimedOut()) {
+					log.severe(e);
+				}
+			} finally {
+				released.countDown();
+				if (completed.compareAndSet(false, true)) {
+					try {
+						complete(async, asyncResponse);
+					} catch (IOException e) {
+						log.severe(e);
+					}
+				}
+			}
+		}, this.configuration.asyncMaxConcurrent);
+		if (!accepted && completed.compareAndSet(false, true)) {
+			try {
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many requests in progress");
+			} finally {
+				release();
+				async.complete();
+			}
+		}
+	}
+
+	/**
+	 * Complete an asynchronous request once the request thread has released the connection, answering 503 if it
+	 * timed out before any of the response was sent.
+	 */
+	private static void complete(final AsyncContext async, final AsyncResponse asyncResponse) throws IOException {
+		try {
+			if (asyncResponse.isTimedOut()) {
+				asyncResponse.sendTimeout();
+			} else {
+				asyncResponse.finish();
+			}
+		} finally {
+			async.complete();
+		}
+	}
+
+	private void serveDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		try {
+			final RouteMatch match = route(request);
+			final ServiceDefinition sd = serviceDefinition(match, request);
+			if (sd == null) {
+				response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			final Map<String, Object> paramMap = new HashMap<String, Object>();
+			match.putParameters(paramMap);
+			if (paramMap.isEmpty()) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			Object result = this.autoRESTDelegate.service(sd, SupportedAction.DELETE, paramMap);
+			if (!(result instanceof Integer)) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			if (((Integer) result).intValue() != 1 ) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+		} finally {
+			release();
+		}
+	}
+	
+	private void serveGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		final String templateName = this.pathTemplates.matchedTemplate(request).name();
+		if (templateName.equals("APIDocument") || templateName.equals("APIDocumentJSON")) {
+			try {
+				writeAPIDocument(request, response, templateName.equals("APIDocumentJSON"));
+			} finally {
+				release();
+			}
 			return;
 		}
-		Object result = this.autoRESTDelegate.service(sd, SupportedAction.DELETE, paramMap);
-		if (!(result instanceof Integer)) {
-			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+		final CompressedResponse compressed = compress(request, response);
+		try {
+			final String coalesceKey = templateName.equals("Service") ? coalesceKey(request) : null;
+			if (coalesceKey == null) {
+				get(request, (compressed == null) ? response : compressed);
+			} else {
+				coalesce(coalesceKey, request, (compressed == null) ? response : compressed);
+			}
+		} finally {
+			if (compressed != null) {
+				compressed.finish();
+			}
+		}
+	}
+
+	/**
+	 * The key which identical requests share: the pool, database user, request URL, query parameters in name order
+	 * and format. Only JSON responses are coalesced, as other formats may export every row, and LOB content is
+	 * streamed to each request. Rows with inline LOB columns are coalesced only while the response fits in
+	 * {@link CapturedResponse#MAX_BODY_BYTES}.
+	 * @return the key or null if the request is not to be coalesced
+	 */
+	private String coalesceKey(final HttpServletRequest request) {
+		if (!this.configuration.coalesce || lobColumn(request) != null
+				|| ResponseFormat.of(request.getHeader("Accept")) != ResponseFormat.JSON) {
+			return null;
+		}
+		final StringBuilder key = new StringBuilder().append(this.autoRESTDelegate.pool).append('\n')
+				.append(this.autoRESTDelegate.schema).append('\n').append(request.getRequestURL());
+		final Map<String, String[]> parameters = request.getParameterMap();
+		if (parameters != null) {
+			for (Map.Entry<String, String[]> parameter : new TreeMap<String, String[]>(parameters).entrySet()) {
+				key.append('\n').append(parameter.getKey());
+				for (String value : parameter.getValue()) {
+					key.append('\u0000').append(value);
+				}
+			}
+		}
+		return key.append('\n').append(ResponseFormat.JSON).toString();
+	}
+
+	/**
+	 * Send the response rendered by the leader of the identical requests in progress, rendering it if this request is
+	 * the leader. A request whose leader fails, does not finish within the request timeout or streams a response too
+	 * large to capture runs on its own.
+	 */
+	private void coalesce(final String key, final HttpServletRequest request, final HttpServletResponse response)
+			throws ServletException, IOException {
+		final CapturedResponse captured;
+		final boolean[] leader = new boolean[1];
+		try {
+			captured = this.coalescer.execute(key, this.configuration.asyncTimeout, () -> {
+				leader[0] = true;
+				final CapturedResponse.Capture capture = new CapturedResponse.Capture(response);
+				get(request, capture);
+				return capture.captured();
+			});
+		} catch (ServletException | IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ServletException(e);
+		}
+		if (captured == null) {
+			// The leader's response has already been streamed to it
+			if (!leader[0]) {
+				get(request, response);
+			}
 			return;
 		}
-		if (((Integer) result).intValue() != 1 ) {
-			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+		try {
+			captured.replay(response);
+		} finally {
+			// A follower's connection was not used
+			release();
+		}
+	}
+
+	/**
+	 * Write the OpenAPI document, with the URL of the first server set to the URL the document was requested from,
+	 * from the bytes rendered for that URL. The gzip form is written when the client accepts it.
+	 */
+	private void writeAPIDocument(final HttpServletRequest request, final HttpServletResponse response,
+			final boolean json) throws IOException {
+		final String requestURL = request.getRequestURL().toString();
+		final RenderedDocument rendered = this.document.rendered(requestURL.substring(0, requestURL.lastIndexOf('/')), json);
+		final boolean gzip = this.configuration.compressionThreshold >= 0
+				&& CompressingOutputStream.negotiate(request.getHeader("Accept-Encoding")) == CompressingOutputStream.Encoding.GZIP;
+		response.addHeader("Vary", "Accept-Encoding");
+		final String etag = gzip ? rendered.gzippedETag : rendered.etag;
+		response.setHeader("ETag", etag);
+		if (RenderedDocument.matches(request.getHeader("If-None-Match"), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 			return;
 		}
-		response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+		response.setContentType(rendered.mediaType);
+		response.setCharacterEncoding("UTF-8");
+		final byte[] body = gzip ? rendered.gzipped : rendered.body;
+		if (gzip) {
+			response.setHeader("Content-Encoding", "gzip");
+		}
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
 	}
-	
-	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		final PathTemplateMatch pathTemplate = this.pathTemplates.matchedTemplate(request);
-		if (pathTemplate.name().equals("APIDocument")) {
-			response.setContentType("application/yaml");
-			response.setCharacterEncoding("UTF-8");
-
-			try (var writer = response.getWriter()) {
-				if (!this.openAPIDocument.getServers().isEmpty()) {
-					final String requestURI = request.getRequestURL().toString();
-					this.openAPIDocument.getServers().get(0).setUrl(requestURI.substring(0, requestURI.length() - 13));
+
+	/**
+	 * Compress the response when the client accepts gzip or deflate and compression is enabled.
+	 * @return the compressing response or null if the response is not to be compressed
+	 */
+	private CompressedResponse compress(final HttpServletRequest request, final HttpServletResponse response) {
+		if (this.configuration.compressionThreshold < 0) {
+			return null;
+		}
+		final CompressingOutputStream.Encoding encoding = CompressingOutputStream.negotiate(request.getHeader("Accept-Encoding"));
+		return (encoding == null) ? null : new CompressedResponse(response, encoding, this.configuration.compressionThreshold);
+	}
+
+	private void get(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		try {
+			final PathTemplateMatch pathTemplate = this.pathTemplates.matchedTemplate(request);
+			if (pathTemplate.name().equals("Metrics")) {
+				writeMetrics(response);
+			} else if (pathTemplate.name().equals("Ready")) {
+				writeReady(response);
+			} else {
+				final String lobColumn = lobColumn(request);
+				final RouteMatch match = (lobColumn == null) ? route(request)
+						: route(request.getPathInfo().substring(0, request.getPathInfo().lastIndexOf(RowCodec.LOB_PATH)));
+				final ServiceDefinition sd = serviceDefinition(match, request);
+				if (sd == null) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+					return;
+				}
+				if (lobColumn != null) {
+					writeLob(match, sd, lobColumn, response);
+					return;
+				}
+			
+				final Map<String, Object> paramMap = new HashMap<String, Object>();
+				final ResponseFormat format = (sd.queryType == SupportedQueryType.COLLECTION)
+						? ResponseFormat.of(request.getHeader("Accept")) : ResponseFormat.JSON;
+				if (sd.queryType == SupportedQueryType.COLLECTION) {
+					final String limitAsString = request.getParameter("limit");
+					final String offsetAsString = request.getParameter("offset");
+					final String after = request.getParameter("after");
+					final int limit;
+					final int offset;
+					try {
+						limit = pagingParameter("limit", limitAsString, 25, 1);
+						offset = pagingParameter("offset", offsetAsString, 0, 0);
+					} catch (IllegalArgumentException e) {
+						response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+						return;
+					}
+					paramMap.put("limit", limit);
+					if (format != ResponseFormat.JSON && limitAsString == null && offsetAsString == null && after == null
+							&& request.getParameter("paging") == null) {
+						// Export every row when rows without an envelope are requested without paging
+						paramMap.put("export", Boolean.TRUE);
+					} else if (after != null || "keyset".equals(request.getParameter("paging"))) {
+						// Keyset pagination, after is the continuation token from the previous page
+						paramMap.put("keyset", Boolean.TRUE);
+						if (after != null && !after.isEmpty()) {
+							try {
+								paramMap.put("after", KeysetToken.decode(after));
+							} catch (IllegalArgumentException e) {
+								response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+								return;
+							}
+						}
+					} else {
+						paramMap.put("offset", offset);
+					}
+				} else if (sd.queryType == SupportedQueryType.ITEM) {
+					match.putParameters(paramMap);
+					if (paramMap.isEmpty()) {
+						response.sendError(404);
+						return;
+					}
+				}
+			
+				final String q = request.getParameter("q");
+				if (q != null && !q.isBlank() && sd.queryType == SupportedQueryType.COLLECTION) {
+					paramMap.put("q", q);
+				}
+				final String fields = request.getParameter("fields");
+				if (fields != null && !fields.isBlank()) {
+					paramMap.put("fields", fields(fields));
+				}
+			
+				final Object resultSet;
+				final Long totalResults;
+				try {
+					resultSet = this.autoRESTDelegate.service(sd, SupportedAction.GET, paramMap);
+					final String totalResultsMode = request.getParameter("totalResults");
+					totalResults = (resultSet == null || totalResultsMode == null || format != ResponseFormat.JSON
+							|| sd.queryType != SupportedQueryType.COLLECTION) ? null
+									: this.autoRESTDelegate.totalResults(sd, totalResultsMode, (String) paramMap.get("q"));
+				} catch (SQLException e) {
+					log.severe(e);
+					response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					return;
+				} catch (IllegalArgumentException e) {
+					response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+					return;
+				}
+				if (resultSet == null) {
+					response.sendError(HttpServletResponse.SC_NOT_FOUND);
+					return;
+				}
+
+				// Stream the ResultSet as JSON
+				try {
+					final ResultSet rs = (ResultSet) resultSet;
+					if (format != ResponseFormat.JSON) {
+						writeRows(rs, response, format, paramMap.containsKey("export") ? -1 : (Integer) paramMap.get("limit"));
+					} else if (sd.queryType == SupportedQueryType.COLLECTION) {
+						final PrimaryKeyStructure pkStructure = paramMap.containsKey("keyset")
+								? this.autoRESTDelegate.metadata(sd).pkStructure : null;
+						response.setContentType("application/json");
+						response.setCharacterEncoding("UTF-8");
+						try (JsonGenerator generator = jsonGenerator(response)) {
+							if (pkStructure != null) {
+								this.resultSetWriter.writeKeysetPage(rs, generator, (Integer) paramMap.get("limit"), pkStructure, totalResults);
+							} else {
+								this.resultSetWriter.writeCollection(rs, generator, paramMap.get("limit"), paramMap.get("offset"), totalResults);
+							}
+						}
+					} else {
+						// Check if there is data
+						if (!rs.next()) {
+							response.sendError(HttpServletResponse.SC_NOT_FOUND);
+							return;
+						}
+						response.setContentType("application/json");
+						response.setCharacterEncoding("UTF-8");
+						try (JsonGenerator generator = jsonGenerator(response)) {
+							this.resultSetWriter.writeItem(rs, generator,
+									this.configuration.lobLinks ? request.getRequestURL().toString() : null);
+						}
+					}
+				} catch (SQLException e) {
+					log.severe(e);
 				}
-				this.yamlMapper.writeValue(writer, this.openAPIDocument);
 			}
-		} else {
-			final ServiceDefinition sd = serviceDefinition(request);
+		} finally {
+			release();
+		}
+	}
+
+	private void servePost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		try {
+	        // Check if Content-Type is application/json or, for a bulk insert, application/x-ndjson
+	        final String mediaType = mediaType(request);
+	        if (!APPLICATION_JSON.equals(mediaType) && !APPLICATION_NDJSON.equals(mediaType)) {
+	            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+	            response.getWriter().write("{\"error\": \"Unsupported Media Type\"}");
+	            return;
+	        }
+
+			final RouteMatch match = route(request);
+			final ServiceDefinition sd = serviceDefinition(match, request);
 			if (sd == null) {
-				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				response.sendError(404);
 				return;
 			}
-			
-			final Map<String, Object> paramMap = new HashMap<String, Object>();
-			if (sd.queryType == SupportedQueryType.COLLECTION) {
-				final String limitAsString = request.getParameter("limit");
-				final String offsetAsString = request.getParameter("offset");
-				paramMap.put("limit", (limitAsString == null) ? 25 : Integer.parseInt(limitAsString));
-				paramMap.put("offset", (offsetAsString == null) ? 0 : Integer.parseInt(offsetAsString));
-			} else if (sd.queryType == SupportedQueryType.ITEM) {
-				pathParameters(request, sd, paramMap);
-				if (paramMap.isEmpty()) {
-					response.sendError(404);
+			final ObjectMetadata metadata = bodyMetadata(sd, response);
+			if (metadata == null) {
+				return;
+			}
+			final JsonParser parser = this.jsonMapper.getFactory().createParser(request.getReader());
+			final JsonToken firstToken = parser.nextToken();
+			if (APPLICATION_NDJSON.equals(mediaType) || firstToken == JsonToken.START_ARRAY) {
+				if (match.hasParameters()) {
+					response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
 					return;
 				}
+				bulkInsert(sd, metadata, parser, firstToken, response);
+				return;
 			}
-			
-			Object resultSet = this.autoRESTDelegate.service(sd, SupportedAction.GET, paramMap);
-			if (resultSet == null) {
-				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			final Map<String, Object> jsonBody;
+			try {
+				jsonBody = TypedRow.read(parser, metadata);
+			} catch (IllegalArgumentException e) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
 				return;
 			}
+			Object resultSet = this.autoRESTDelegate.service(sd, SupportedAction.POST, jsonBody);
 
-			// Convert ResultSet to JSON
-			try {
-				ObjectNode jsonNode = resultSetToJson((ResultSet) resultSet, sd, paramMap, request);
-				if (jsonNode.isEmpty()) {
-					response.sendError(HttpServletResponse.SC_NOT_FOUND);
-					return;
-				}
+			if (resultSet == null) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+				return;
+			}
+			if (resultSet instanceof Map) {
+				// The inserted row was built from the request values and the generated keys
+				response.setStatus(HttpServletResponse.SC_CREATED);
 				response.setContentType("application/json");
 				response.setCharacterEncoding("UTF-8");
+				try (JsonGenerator generator = jsonGenerator(response)) {
+					generator.writeObject(resultSet);
+				}
+				return;
+			}
 
-				try (var writer = response.getWriter()) {
-					this.jsonMapper.writeValue(writer, jsonNode);
+			// Stream the ResultSet as JSON
+			try {
+				final ResultSet rs = (ResultSet) resultSet;
+				response.setStatus(HttpServletResponse.SC_CREATED);
+				if (rs.next()) {
+					writeItem(rs, response);
+				} else {
+					writeEmptyItem(response);
 				}
 			} catch (SQLException e) {
 				log.severe(e);
 			}
+		} finally {
+			release();
 		}
 	}
+	
+	private void servePut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		try {
+	        // Check if Content-Type is application/json
+	        if (!APPLICATION_JSON.equals(mediaType(request))) {
+	            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+	            response.getWriter().write("{\"error\": \"Unsupported Media Type\"}");
+	            return;
+	        }
 
-	private void pathParameters(HttpServletRequest request, final ServiceDefinition sd,
-			final Map<String, Object> paramMap) throws IOException {
-		final Map<String, Parameter> pathParameters = new HashMap<String, Parameter>();
-		for (Parameter param: this.openAPIDocument.getPaths().get(sd.path).getParameters()) {
-			if (param.getIn().equals("path")) {
-				pathParameters.put(param.getName(), param);
+			final RouteMatch match = route(request);
+			final ServiceDefinition sd = serviceDefinition(match, request);
+			if (sd == null) {
+				response.sendError(404);
+				return;
 			}
-		}
-		String[] pathItemKeyParts = sd.path.split("/");
-		String[] requestPathParts = request.getPathInfo().substring(PATH_PREFIX.length()).split("/");
-		if (pathItemKeyParts.length != requestPathParts.length) {
-			return;
-		}
-		for (int i=0; i < pathItemKeyParts.length; i++) {
-			final String pathFragment = pathItemKeyParts[i];
-			if (pathFragment.startsWith("{") && pathFragment.endsWith("}")) {
-				final String parameterName = pathFragment.substring(1, (pathFragment.length() - 1));
-				switch (pathParameters.get(parameterName).getSchema().getType()) {
-				case "string": paramMap.put(parameterName, requestPathParts[i]); break; 
-				case "integer": paramMap.put(parameterName, Integer.valueOf(requestPathParts[i])); break; 
-				case "number": paramMap.put(parameterName, new BigDecimal(requestPathParts[i])); break; 
+			final Map<String, Object> paramMap = new HashMap<String, Object>();
+			match.putParameters(paramMap);
+			if (paramMap.isEmpty()) {
+				response.sendError(404);
+				return;
+			}
+			final ObjectMetadata metadata = bodyMetadata(sd, response);
+			if (metadata == null) {
+				return;
+			}
+			final Map<String, Object> jsonBody;
+			try {
+				final JsonParser parser = this.jsonMapper.getFactory().createParser(request.getReader());
+				parser.nextToken();
+				jsonBody = TypedRow.read(parser, metadata);
+			} catch (IllegalArgumentException e) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+				return;
+			}
+			Object resultSet = this.autoRESTDelegate.service(sd, SupportedAction.PUT, jsonBody);
+
+			if (resultSet == null) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+				return;
+			}
+
+			// Stream the ResultSet as JSON
+			try {
+				final ResultSet rs = (ResultSet) resultSet;
+				response.setStatus(HttpServletResponse.SC_OK);
+				if (rs.next()) {
+					writeItem(rs, response);
+				} else {
+					writeEmptyItem(response);
 				}
-				
-				
+			} catch (SQLException e) {
+				log.severe(e);
 			}
+		} finally {
+			release();
 		}
 	}
+	
+	/**
+	 * Insert the rows of a JSON array or NDJSON stream, reading them from the parser one at a time, and respond with
+	 * a summary of the batches.
+	 */
+	private void bulkInsert(final ServiceDefinition sd, final ObjectMetadata metadata, final JsonParser parser,
+			final JsonToken firstToken, final HttpServletResponse response) throws IOException {
+		final boolean array = firstToken == JsonToken.START_ARRAY;
+		final RowReader rows = new RowReader() {
+			private JsonToken token = array ? parser.nextToken() : firstToken;
 
-	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        // Check if Content-Type is application/json
-        if (!"application/json".equalsIgnoreCase(request.getContentType())) {
-            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
-            response.getWriter().write("{\"error\": \"Unsupported Media Type\"}");
-            return;
-        }
-
-		final Map<String, Object> jsonBody = jsonMapper.readValue(request.getReader(), Map.class);
-		final ServiceDefinition sd = serviceDefinition(request);
-		if (sd == null) {
-			response.sendError(404);
-			return;
-		}
-		Object resultSet = this.autoRESTDelegate.service(sd, SupportedAction.POST, jsonBody);
+			@Override
+			public Map<String, Object> next() throws IOException {
+				if (token == null || token == JsonToken.END_ARRAY) {
+					return null;
+				}
+				if (token != JsonToken.START_OBJECT) {
+					throw new JsonParseException(parser, "Expected a JSON object for each row");
+				}
+				final Map<String, Object> row;
+				try {
+					row = TypedRow.read(parser, metadata);
+				} catch (IllegalArgumentException e) {
+					// Fails the batch like any other invalid row
+					throw new JsonParseException(parser, e.getMessage());
+				}
+				token = parser.nextToken();
+				return row;
+			}
+		};
 
-		// Convert ResultSet to JSON
+		final BulkInsertSummary summary;
 		try {
-			ObjectNode jsonNode = resultSetToJson((ResultSet) resultSet, sd, jsonBody, request);
-			response.setStatus(HttpServletResponse.SC_CREATED);
-			response.setContentType("application/json");
-			response.setCharacterEncoding("UTF-8");
-
-			try (var writer = response.getWriter()) {
-				this.jsonMapper.writeValue(writer, jsonNode);
-			}
+			summary = this.autoRESTDelegate.bulkInsert(sd, rows, this.configuration.bulkBatchSize);
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
 		} catch (SQLException e) {
 			log.severe(e);
-		}
-	}
-	
-	public void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        // Check if Content-Type is application/json
-        if (!"application/json".equalsIgnoreCase(request.getContentType())) {
-            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
-            response.getWriter().write("{\"error\": \"Unsupported Media Type\"}");
-            return;
-        }
-
-		final Map<String, Object> jsonBody = jsonMapper.readValue(request.getReader(), Map.class);
-		final ServiceDefinition sd = serviceDefinition(request);
-		if (sd == null) {
-			response.sendError(404);
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 			return;
 		}
-		final Map<String, Object> paramMap = new HashMap<String, Object>();
-		pathParameters(request, sd, paramMap);
-		if (paramMap.isEmpty()) {
-			response.sendError(404);
+		if (summary == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
 			return;
 		}
-		Object resultSet = this.autoRESTDelegate.service(sd, SupportedAction.PUT, jsonBody);
+		response.setStatus(summary.isFailed() ? HttpServletResponse.SC_BAD_REQUEST : HttpServletResponse.SC_CREATED);
+		response.setContentType(APPLICATION_JSON);
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = jsonGenerator(response)) {
+			summary.write(generator);
+		}
+	}
 
-		// Convert ResultSet to JSON
+	/**
+	 * The metadata of the object, for reading the request body as {@link TypedRow}s.
+	 * @return the metadata or null if an error response has been sent because it is not available
+	 */
+	private ObjectMetadata bodyMetadata(final ServiceDefinition sd, final HttpServletResponse response)
+			throws IOException {
 		try {
-			ObjectNode jsonNode = resultSetToJson((ResultSet) resultSet, sd, jsonBody, request);
-			response.setStatus(HttpServletResponse.SC_OK);
-			response.setContentType("application/json");
-			response.setCharacterEncoding("UTF-8");
-
-			try (var writer = response.getWriter()) {
-				this.jsonMapper.writeValue(writer, jsonNode);
+			final ObjectMetadata metadata = this.autoRESTDelegate.metadata(sd);
+			if (metadata.isVisible()) {
+				return metadata;
 			}
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
 		} catch (SQLException e) {
 			log.severe(e);
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
+		return null;
 	}
-	
-	private ServiceDefinition serviceDefinition(HttpServletRequest request) {
-		final String path = request.getPathInfo().substring(PATH_PREFIX.length());
 
-		final String pathItemKey = pathItemKey(path);
-		log.fine("serviceDefinition pathItemKey: " + pathItemKey);
-		if (pathItemKey == null) {
-			return null;
+	/**
+	 * The names in a comma separated fields parameter, which are validated against the columns of the object when
+	 * the query is built.
+	 */
+	private static List<String> fields(final String fields) {
+		final List<String> names = new ArrayList<String>();
+		for (String name : fields.split(",")) {
+			if (!name.isBlank()) {
+				names.add(name.trim());
+			}
 		}
-		final PathItem pathItem = this.openAPIDocument.getPaths().get(pathItemKey);
-		log.fine("serviceDefinition pathItem: " + pathItem);
-		if (pathItem == null) {
-			return null;
+		return names;
+	}
+
+	/**
+	 * The value of the limit or offset parameter.
+	 * @param value the parameter as given, or null if it is not given
+	 * @return the value, or defaultValue if it is not given
+	 * @throws IllegalArgumentException if the value is not a whole number of at least minimum
+	 */
+	private static int pagingParameter(final String name, final String value, final int defaultValue,
+			final int minimum) {
+		if (value == null) {
+			return defaultValue;
 		}
+		try {
+			final int number = Integer.parseInt(value.trim());
+			if (number >= minimum) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new IllegalArgumentException(name + " must be a whole number of at least " + minimum);
+	}
 
-		final Operation operation = operation(pathItem, request);
-		if (operation == null) {
+	/**
+	 * The media type of the request body without any parameters such as charset.
+	 */
+	private static String mediaType(final HttpServletRequest request) {
+		final String contentType = request.getContentType();
+		if (contentType == null) {
 			return null;
 		}
+		final int separator = contentType.indexOf(';');
+		return ((separator < 0) ? contentType : contentType.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+	}
 
-		Map<?, ?> serviceDefinition = null;
-		// Check for an operation specific x-autorest definition. If there is not one then check at the path
-		if (operation.getExtensions() != null && operation.getExtensions().containsKey("x-autorest") ) {
-			serviceDefinition = (Map<?, ?>) operation.getExtensions().get("x-autorest");
-		} else if (pathItem.getExtensions() != null && pathItem.getExtensions().containsKey("x-autorest")) {
-			serviceDefinition = (Map<?, ?>) pathItem.getExtensions().get("x-autorest");
-		}
-		this.log.fine("serviceDefinition() x-autorest: " + serviceDefinition);
-		if (serviceDefinition == null) {
-			return null;
+	/**
+	 * Close the statements and result sets used to service the request.
+	 */
+	private void release() {
+		try {
+			this.autoRESTDelegate.close();
+		} catch (SQLException e) {
+			log.severe(e);
 		}
+	}
 
-		if (!serviceDefinition.containsKey("identifier")) {
-			this.log.fine("serviceDefinition() x-autorest missing 'identifier' attribute.");
+	/**
+	 * Write the JDBC resource counters as JSON.
+	 */
+	private void writeMetrics(final HttpServletResponse response) throws IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = jsonGenerator(response)) {
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("jdbc");
+			generator.writeNumberField("statementsOpened", ResourceScope.STATEMENTS_OPENED.sum());
+			generator.writeNumberField("statementsOpen", ResourceScope.openStatements());
+			generator.writeNumberField("resultSetsOpened", ResourceScope.RESULT_SETS_OPENED.sum());
+			generator.writeNumberField("resultSetsOpen", ResourceScope.openResultSets());
+			generator.writeNumberField("leakedScopes", ResourceScope.LEAKED_SCOPES.sum());
+			generator.writeEndObject();
+			generator.writeObjectFieldStart("coalescing");
+			generator.writeNumberField("leaders", this.coalescer.leaders.sum());
+			generator.writeNumberField("followers", this.coalescer.followers.sum());
+			generator.writeNumberField("inFlight", this.coalescer.inFlight());
+			generator.writeNumberField("ratio", this.coalescer.ratio());
+			generator.writeEndObject();
+			generator.writeEndObject();
 		}
+	}
 
-		if (!serviceDefinition.containsKey("type")) {
-			this.log.fine("serviceDefinition() x-autorest missing 'type' attribute.");
+	/**
+	 * Write <code>{"ready":true}</code> once the warm-up for this pool and database user has finished, otherwise
+	 * resolve some of the resources it has left and write <code>{"ready":false}</code> with status 503 so that the node
+	 * is not put into service yet. The summary of the warm-up lists any resource which cannot be serviced, in which
+	 * case the node is never reported ready.
+	 */
+	private void writeReady(final HttpServletResponse response) throws IOException {
+		final WarmUpSummary summary = this.configuration.warmUp
+				? this.warmUp.warmUp(this.autoRESTDelegate, this.document, WarmUp.SLICE_MILLIS)
+				: null;
+		final boolean ready = summary == null || summary.isHealthy();
+		if (!ready) {
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
 		}
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = jsonGenerator(response)) {
+			generator.writeStartObject();
+			generator.writeBooleanField("ready", ready);
+			if (summary != null) {
+				generator.writeFieldName("warmUp");
+				summary.write(generator);
+			}
+			generator.writeEndObject();
+		}
+	}
 
-		ServiceDefinition sd = new ServiceDefinition();
-		if (serviceDefinition.containsKey("owner")) {
-			sd.owner = serviceDefinition.get("owner").toString();
+	/**
+	 * The column for a request for the content of a LOB, <code>item/_lob/column</code>, when LOB links are enabled.
+	 * @return the column name or null if the request is not for the content of a LOB
+	 */
+	private String lobColumn(final HttpServletRequest request) {
+		if (!this.configuration.lobLinks) {
+			return null;
 		}
-		sd.identifier = serviceDefinition.get("identifier").toString();
-		sd.path = pathItemKey;
-		switch (serviceDefinition.get("type").toString().toLowerCase()) {
-		case "table":
-			sd.type = SupportedObjectType.TABLE;
-			break;
-		case "view":
-			sd.type = SupportedObjectType.VIEW;
-			break;
+		final String pathInfo = request.getPathInfo();
+		final int index = pathInfo.lastIndexOf(RowCodec.LOB_PATH);
+		if (index < 0) {
+			return null;
 		}
-		
-		// For a GET operation the query may be for a collection of resource items or a single resource item.
-		if (request.getMethod().equals("GET")) {
-			sd.queryType = SupportedQueryType.COLLECTION;
-			if (pathItem.getParameters() != null) {
-				for (Parameter param: pathItem.getParameters()) {
-					if (param.getIn().equalsIgnoreCase("path")) {
-						sd.queryType = SupportedQueryType.ITEM;
+		final String column = URLDecoder.decode(pathInfo.substring(index + RowCodec.LOB_PATH.length()), StandardCharsets.UTF_8);
+		return (column.isBlank() || column.indexOf('/') >= 0) ? null : column;
+	}
+
+	/**
+	 * Stream the content of a LOB column of an item: character data as text/plain and binary data as
+	 * application/octet-stream. The content is copied as it is read from the database.
+	 */
+	private void writeLob(final RouteMatch match, final ServiceDefinition sd, final String column,
+			final HttpServletResponse response) throws IOException {
+		final Map<String, Object> paramMap = new HashMap<String, Object>();
+		match.putParameters(paramMap);
+		if (sd.queryType != SupportedQueryType.ITEM || paramMap.isEmpty()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		paramMap.put("fields", List.of(column));
+		try {
+			final ResultSet rs = (ResultSet) this.autoRESTDelegate.service(sd, SupportedAction.GET, paramMap);
+			if (rs == null || !rs.next()) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			final ColumnCodec codec = ColumnCodec.of(rs.getMetaData(), 1);
+			if (codec == ColumnCodec.CHARACTER_STREAM) {
+				try (Reader content = rs.getCharacterStream(1)) {
+					if (content == null) {
+						response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+						return;
 					}
+					response.setContentType("text/plain");
+					response.setCharacterEncoding("UTF-8");
+					content.transferTo(response.getWriter());
 				}
-			}
-		}
-		return sd;
-	}
-
-	private String pathItemKey(final String path) {
-		if (this.openAPIDocument.getPaths().containsKey(path)) {
-			return path;
-		}
-		// No direct match now to iterate over paths that have parameters
-		for (String key: this.openAPIDocument.getPaths().keySet()) {
-			if (this.openAPIDocument.getPaths().get(key).getParameters() != null) {
-				// This is a PathItem which has a parameter defined in the path
-				this.log.fine("pathItemKey:" + key);
-				final StringBuilder sb = new StringBuilder();
-				String[] fragments = key.split("/");
-				for (String fragment : fragments) {
-		            // Skip empty fragments caused by leading/trailing slashes
-		            if (!fragment.isEmpty() && !fragment.startsWith("{") && !fragment.endsWith("}")) {
-		            	sb.append("/");
-		            	sb.append(fragment);
-		            }
-		        }
-				if (path.startsWith(sb.toString())) {
-					return key;
+			} else if (codec == ColumnCodec.BINARY_STREAM) {
+				try (InputStream content = rs.getBinaryStream(1)) {
+					if (content == null) {
+						response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+						return;
+					}
+					response.setContentType("application/octet-stream");
+					content.transferTo(response.getOutputStream());
 				}
+			} else {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
 			}
+		} catch (SQLException e) {
+			log.severe(e);
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
 		}
-		
-		return null;
 	}
-	private Operation operation(PathItem pathItem, HttpServletRequest request) {
-		switch (request.getMethod()) {
-		case "DELETE":
-			return pathItem.getDelete();
-		case "GET":
-			return pathItem.getGet();
-		case "POST":
-			return pathItem.getPost();
-		case "PUT":
-			return pathItem.getPut();
-		}
-		return null;
+
+	private RouteMatch route(final HttpServletRequest request) {
+		return route(request.getPathInfo());
 	}
 
-	private ObjectNode resultSetToJson(final ResultSet resultSet, final ServiceDefinition sd, final Map<String, Object> values, final HttpServletRequest request) throws SQLException {
-		ObjectNode rootNode = this.jsonMapper.createObjectNode();
-		if (sd.queryType == SupportedQueryType.COLLECTION) {
-			int rowCount = 0;
-			final ArrayNode items = rootNode.arrayNode();
-			while (resultSet.next()) {
-				final ObjectNode rowNode = items.addObject();
-				resultSetToJson(resultSet, rowNode);
-				rowCount++;
-			}
-			rootNode.putPOJO("limit", values.get("limit"));
-			rootNode.putPOJO("offset", values.get("offset"));
-			rootNode.putPOJO("count", rowCount);
-			rootNode.set("items", items);
-		} else {
-			// Check if there is data
-			if (resultSet.next()) {
-				resultSetToJson(resultSet, rootNode);
-			}
+	/**
+	 * Match the request path against the routes compiled from the OpenAPI document.
+	 */
+	private RouteMatch route(final String pathInfo) {
+		final String path = pathInfo.substring(PATH_PREFIX.length());
+		final RouteMatch match = this.document.routes.match(path);
+		log.fine("route path: " + path + " matched: " + ((match == null) ? null : match.route.path));
+		return match;
+	}
+
+	private ServiceDefinition serviceDefinition(final RouteMatch match, HttpServletRequest request) {
+		if (match == null) {
+			return null;
 		}
-		return rootNode;
+		return match.route.service(request.getMethod());
 	}
 
-	private void resultSetToJson(final ResultSet resultSet, ObjectNode rootNode) throws SQLException {
-		ResultSetMetaData metaData = resultSet.getMetaData();
-		int columnCount = metaData.getColumnCount();
+	/**
+	 * Generator which writes directly to the response output stream.
+	 */
+	private JsonGenerator jsonGenerator(final HttpServletResponse response) throws IOException {
+		return this.jsonMapper.getFactory().createGenerator(response.getOutputStream());
+	}
 
-		for (int i = 1; i <= columnCount; i++) {
-			String columnName = metaData.getColumnLabel(i);
-			Object columnValue = resultSet.getObject(i);
+	/**
+	 * Write the current row of the ResultSet as the JSON response.
+	 */
+	private void writeItem(final ResultSet resultSet, final HttpServletResponse response) throws SQLException, IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = jsonGenerator(response)) {
+			this.resultSetWriter.writeItem(resultSet, generator);
+		}
+	}
 
-			// Add each column as a field in the JSON object
-			if (columnValue != null) {
-				rootNode.putPOJO(columnName, columnValue);
-			} else {
-				rootNode.putNull(columnName);
-			}
+	/**
+	 * Stream the rows of a collection without an envelope.
+	 * @param maxRows the number of rows to write, or -1 for every row
+	 */
+	private void writeRows(final ResultSet resultSet, final HttpServletResponse response, final ResponseFormat format,
+			final int maxRows) throws SQLException, IOException {
+		response.setContentType(format.mediaType);
+		response.setCharacterEncoding("UTF-8");
+		if (format == ResponseFormat.CSV) {
+			this.csvWriter.writeRows(resultSet, response.getOutputStream(), maxRows);
+			return;
+		}
+		try (JsonGenerator generator = jsonGenerator(response)) {
+			this.resultSetWriter.writeLines(resultSet, generator, maxRows);
+		}
+	}
+
+	private void writeEmptyItem(final HttpServletResponse response) throws IOException {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		try (JsonGenerator generator = jsonGenerator(response)) {
+			generator.writeStartObject();
+			generator.writeEndObject();
 		}
 	}
 
 	private final AutoRESTJDBC autoRESTDelegate;
+	private final AutoRESTConfiguration configuration;
+	private final WarmUp warmUp;
+	private final AsyncExecutor asyncExecutor;
+	private final RequestCoalescer coalescer;
 	private final Log log;
 	private final ObjectMapper jsonMapper = new ObjectMapper();
-	private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
-	private final OpenAPI openAPIDocument;
+	private final JsonResultSetWriter resultSetWriter;
+	private final CsvResultSetWriter csvWriter = new CsvResultSetWriter();
+	private final AutoRESTDocument document;
 	private final PathTemplates pathTemplates;
 	public static final String PATH_PREFIX = "/autorest";
+	static final String APPLICATION_JSON = "application/json";
+	static final String APPLICATION_NDJSON = "application/x-ndjson";
+	/**
+	 * Time the container thread waits, when an asynchronous request times out, for the cancelled request to release
+	 * its connection.
+	 */
+	static final long TIMEOUT_GRACE_MILLIS = 5000;
 	/**
 	 * Default serialVersionUI for serialisation.
 	 */
@@ -17,4 +17,85 @@ public abstract class AutoRESTSettings {
 		public String toString(Iterable<Locale> arg0) {
 			return "The location of the OpenAPI v3 description of AutoREST services.";
 		}});
+
+	static final String AUTOREST_BULK_BATCH_SIZE = "autorest.bulk.batch.size";
+	@Named(AutoRESTSettings.AUTOREST_BULK_BATCH_SIZE)
+	static final ConfigurationSetting _AUTOREST_BULK_BATCH_SIZE = ConfigurationSetting.setting("1000", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "The number of rows inserted in each JDBC batch, and committed together, when a JSON array or NDJSON stream is posted to a collection.";
+		}});
+
+	static final String AUTOREST_EXPORT_FETCH_SIZE = "autorest.export.fetch.size";
+	@Named(AutoRESTSettings.AUTOREST_EXPORT_FETCH_SIZE)
+	static final ConfigurationSetting _AUTOREST_EXPORT_FETCH_SIZE = ConfigurationSetting.setting("1000", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "The number of rows fetched from the database in each round trip when a collection is exported without paging.";
+		}});
+
+	static final String AUTOREST_COMPRESSION_THRESHOLD = "autorest.compression.threshold";
+	@Named(AutoRESTSettings.AUTOREST_COMPRESSION_THRESHOLD)
+	static final ConfigurationSetting _AUTOREST_COMPRESSION_THRESHOLD = ConfigurationSetting.setting("1024", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "The size in bytes above which GET responses are compressed when the client accepts gzip or deflate. A negative value disables compression.";
+		}});
+
+	static final String AUTOREST_WARMUP_ENABLED = "autorest.warmup.enabled";
+	@Named(AutoRESTSettings.AUTOREST_WARMUP_ENABLED)
+	static final ConfigurationSetting _AUTOREST_WARMUP_ENABLED = ConfigurationSetting.setting("false", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "When true, a readiness check on /_/ready resolves every x-autorest resource and prepares its select statement for the pool, and reports broken resources in one summary.";
+		}});
+
+	static final String AUTOREST_LOB_LINKS = "autorest.lob.links";
+	@Named(AutoRESTSettings.AUTOREST_LOB_LINKS)
+	static final ConfigurationSetting _AUTOREST_LOB_LINKS = ConfigurationSetting.setting("false", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "When true, CLOB and BLOB columns of an item are returned as links, item/_lob/column, which stream the content rather than including it in the JSON.";
+		}});
+
+	static final String AUTOREST_ASYNC_ENABLED = "autorest.async.enabled";
+	@Named(AutoRESTSettings.AUTOREST_ASYNC_ENABLED)
+	static final ConfigurationSetting _AUTOREST_ASYNC_ENABLED = ConfigurationSetting.setting("false", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "When true, requests are serviced asynchronously on a separate bounded set of threads, virtual threads on Java 21 or later, so that slow queries do not hold container threads.";
+		}});
+
+	static final String AUTOREST_ASYNC_TIMEOUT = "autorest.async.timeout";
+	@Named(AutoRESTSettings.AUTOREST_ASYNC_TIMEOUT)
+	static final ConfigurationSetting _AUTOREST_ASYNC_TIMEOUT = ConfigurationSetting.setting("30000", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "The time in milliseconds an asynchronous request may take. The statements of a request which times out are cancelled and 503 is returned if no response has been sent. A coalesced request waits at most this long for the response of another before running its own query.";
+		}});
+
+	static final String AUTOREST_ASYNC_MAX_CONCURRENT = "autorest.async.max.concurrent";
+	@Named(AutoRESTSettings.AUTOREST_ASYNC_MAX_CONCURRENT)
+	static final ConfigurationSetting _AUTOREST_ASYNC_MAX_CONCURRENT = ConfigurationSetting.setting("64", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "The number of asynchronous requests serviced at the same time. Requests above this are rejected with 503.";
+		}});
+
+	static final String AUTOREST_COALESCE_ENABLED = "autorest.coalesce.enabled";
+	@Named(AutoRESTSettings.AUTOREST_COALESCE_ENABLED)
+	static final ConfigurationSetting _AUTOREST_COALESCE_ENABLED = ConfigurationSetting.setting("false", new Translatable() {
+
+		@Override
+		public String toString(Iterable<Locale> arg0) {
+			return "When true, identical JSON GET requests for the same pool and database user which are in progress at the same time run one query and are all sent its response. Responses are held in memory to be shared, up to 256 KB, so larger responses are streamed and not shared.";
+		}});
 }
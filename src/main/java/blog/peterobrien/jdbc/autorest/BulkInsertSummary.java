@@ -0,0 +1,61 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Outcome of a bulk insert, one entry for each batch of rows rather than the inserted rows themselves.
+ */
+public class BulkInsertSummary {
+	static final String COMMITTED = "committed";
+	static final String ROLLED_BACK = "rolled back";
+
+	private final List<Chunk> chunks = new ArrayList<Chunk>();
+	private long rows;
+	private boolean failed;
+
+	void committed(final int chunkRows) {
+		chunks.add(new Chunk(chunkRows, COMMITTED, null));
+		rows += chunkRows;
+	}
+
+	void rolledBack(final int chunkRows, final String error) {
+		chunks.add(new Chunk(chunkRows, ROLLED_BACK, error));
+		failed = true;
+	}
+
+	boolean isFailed() {
+		return failed;
+	}
+
+	long rows() {
+		return rows;
+	}
+
+	/**
+	 * Write the summary as <code>{"rows":n,"chunks":[{"rows":n,"status":"committed"},...]}</code> where rows is the
+	 * number of rows committed.
+	 */
+	void write(final JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeNumberField("rows", rows);
+		generator.writeArrayFieldStart("chunks");
+		for (Chunk chunk : chunks) {
+			generator.writeStartObject();
+			generator.writeNumberField("rows", chunk.rows);
+			generator.writeStringField("status", chunk.status);
+			if (chunk.error != null) {
+				generator.writeStringField("error", chunk.error);
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	private record Chunk(int rows, String status, String error) {
+	}
+}
@@ -0,0 +1,302 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A response rendered into memory so that it can be sent to every request coalesced by the {@link RequestCoalescer}.
+ * The status, headers and body are recorded by the {@link Capture} wrapper and written to each response by
+ * {@link #replay(HttpServletResponse)}. A captured response is not modified once it is rendered. Only responses up to
+ * {@link #MAX_BODY_BYTES} are held in memory: a larger response is streamed to the request which rendered it and is
+ * not shared.
+ */
+final class CapturedResponse {
+	/**
+	 * The largest body which is captured. Once more is written the response is streamed instead.
+	 */
+	static final int MAX_BODY_BYTES = 256 * 1024;
+
+	private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+			.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+	private final int status;
+	private final String errorMessage;
+	private final boolean error;
+	private final String contentType;
+	private final String characterEncoding;
+	private final Locale locale;
+	private final List<String[]> headers;
+	private final byte[] body;
+
+	private CapturedResponse(final Capture capture) {
+		this.status = capture.status;
+		this.errorMessage = capture.errorMessage;
+		this.error = capture.error;
+		this.contentType = capture.contentType;
+		this.characterEncoding = capture.characterEncoding;
+		this.locale = capture.locale;
+		this.headers = List.copyOf(capture.headers);
+		this.body = capture.body.toByteArray();
+	}
+
+	/**
+	 * Send the captured response.
+	 */
+	void replay(final HttpServletResponse response) throws IOException {
+		if (error) {
+			if (errorMessage == null) {
+				response.sendError(status);
+			} else {
+				response.sendError(status, errorMessage);
+			}
+			return;
+		}
+		if (status != 0) {
+			response.setStatus(status);
+		}
+		for (String[] header : headers) {
+			response.addHeader(header[0], header[1]);
+		}
+		if (locale != null) {
+			response.setLocale(locale);
+		}
+		if (contentType != null) {
+			response.setContentType(contentType);
+		}
+		if (characterEncoding != null) {
+			response.setCharacterEncoding(characterEncoding);
+		}
+		if (body.length > 0) {
+			response.getOutputStream().write(body);
+		}
+	}
+
+	/**
+	 * Records what is written to a response instead of sending it, until the body is larger than
+	 * {@link #MAX_BODY_BYTES}. What has been recorded is then sent and the rest of the response is written through.
+	 */
+	static final class Capture extends HttpServletResponseWrapper {
+		Capture(final HttpServletResponse response) {
+			super(response);
+		}
+
+		/**
+		 * @return the response written so far, or null if it was too large to capture and has been streamed
+		 */
+		CapturedResponse captured() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			}
+			if (streamed != null) {
+				streamed.flush();
+				return null;
+			}
+			return new CapturedResponse(this);
+		}
+
+		/**
+		 * Send what has been recorded and write the rest of the response through.
+		 */
+		private void stream() throws IOException {
+			final HttpServletResponse response = (HttpServletResponse) getResponse();
+			new CapturedResponse(this).replay(response);
+			body.reset();
+			streamed = response.getOutputStream();
+		}
+
+		@Override
+		public void sendError(final int status, final String message) throws IOException {
+			if (streamed != null) {
+				super.sendError(status, message);
+				return;
+			}
+			this.status = status;
+			this.errorMessage = message;
+			this.error = true;
+		}
+
+		@Override
+		public void sendError(final int status) throws IOException {
+			if (streamed != null) {
+				super.sendError(status);
+				return;
+			}
+			sendError(status, null);
+		}
+
+		@Override
+		public void setStatus(final int status) {
+			if (streamed != null) {
+				super.setStatus(status);
+				return;
+			}
+			this.status = status;
+		}
+
+		@Override
+		public void setHeader(final String name, final String value) {
+			if (streamed != null) {
+				super.setHeader(name, value);
+				return;
+			}
+			headers.removeIf(header -> header[0].equalsIgnoreCase(name));
+			addHeader(name, value);
+		}
+
+		@Override
+		public void addHeader(final String name, final String value) {
+			if (streamed != null) {
+				super.addHeader(name, value);
+				return;
+			}
+			headers.add(new String[] { name, value });
+		}
+
+		@Override
+		public void setIntHeader(final String name, final int value) {
+			setHeader(name, Integer.toString(value));
+		}
+
+		@Override
+		public void addIntHeader(final String name, final int value) {
+			addHeader(name, Integer.toString(value));
+		}
+
+		@Override
+		public void setDateHeader(final String name, final long date) {
+			setHeader(name, HTTP_DATE.format(Instant.ofEpochMilli(date)));
+		}
+
+		@Override
+		public void addDateHeader(final String name, final long date) {
+			addHeader(name, HTTP_DATE.format(Instant.ofEpochMilli(date)));
+		}
+
+		@Override
+		public void setContentType(final String type) {
+			if (streamed != null) {
+				super.setContentType(type);
+				return;
+			}
+			this.contentType = type;
+		}
+
+		@Override
+		public void setCharacterEncoding(final String charset) {
+			if (streamed != null) {
+				super.setCharacterEncoding(charset);
+				return;
+			}
+			this.characterEncoding = charset;
+		}
+
+		@Override
+		public String getCharacterEncoding() {
+			return (characterEncoding == null) ? "UTF-8" : characterEncoding;
+		}
+
+		@Override
+		public void setLocale(final Locale locale) {
+			if (streamed != null) {
+				super.setLocale(locale);
+				return;
+			}
+			this.locale = locale;
+		}
+
+		@Override
+		public void setContentLength(final int length) {
+		}
+
+		@Override
+		public void setContentLengthLong(final long length) {
+		}
+
+		@Override
+		public boolean isCommitted() {
+			return streamed != null && super.isCommitted();
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (outputStream == null) {
+				outputStream = new ServletOutputStream() {
+					@Override
+					public void write(final int b) throws IOException {
+						if (streamed == null && body.size() + 1 > MAX_BODY_BYTES) {
+							stream();
+						}
+						if (streamed == null) {
+							body.write(b);
+						} else {
+							streamed.write(b);
+						}
+					}
+
+					@Override
+					public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+						if (streamed == null && body.size() + length > MAX_BODY_BYTES) {
+							stream();
+						}
+						if (streamed == null) {
+							body.write(bytes, offset, length);
+						} else {
+							streamed.write(bytes, offset, length);
+						}
+					}
+
+					@Override
+					public void flush() throws IOException {
+						if (streamed != null) {
+							streamed.flush();
+						}
+					}
+
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(final WriteListener writeListener) {
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() {
+			if (writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.forName(getCharacterEncoding())));
+			}
+			return writer;
+		}
+
+		private int status;
+		private String errorMessage;
+		private boolean error;
+		private String contentType;
+		private String characterEncoding;
+		private Locale locale;
+		private final List<String[]> headers = new ArrayList<String[]>();
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		private ServletOutputStream outputStream;
+		private ServletOutputStream streamed;
+		private PrintWriter writer;
+	}
+}
@@ -0,0 +1,247 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Reads a column of the current row with the getter for its SQL type and writes the value to the generator, so that
+ * numbers are not boxed and Jackson does not have to find a serializer for each value. Values are written as
+ * {@link JsonGenerator#writeObject(Object)} would write the object returned by {@link ResultSet#getObject(int)},
+ * except for types the default serializers cannot write: timestamps with time zone are written as ISO-8601 strings
+ * and PostgreSQL <code>json</code> and <code>jsonb</code> values are written as JSON rather than as a string.
+ * Character and binary LOBs are streamed rather than read into memory.
+ */
+@FunctionalInterface
+interface ColumnCodec {
+	/**
+	 * Oracle TIMESTAMP WITH TIME ZONE.
+	 */
+	int ORACLE_TIMESTAMPTZ = -101;
+	/**
+	 * Oracle TIMESTAMP WITH LOCAL TIME ZONE.
+	 */
+	int ORACLE_TIMESTAMPLTZ = -102;
+	int ORACLE_BINARY_FLOAT = 100;
+	int ORACLE_BINARY_DOUBLE = 101;
+	/**
+	 * Integer columns with up to this many digits are read as a long.
+	 */
+	int LONG_DIGITS = 18;
+
+	void write(ResultSet resultSet, int column, JsonGenerator generator) throws SQLException, IOException;
+
+	/**
+	 * @return true if the value is streamed from the database rather than read into memory
+	 */
+	default boolean isLob() {
+		return this == CHARACTER_STREAM || this == BINARY_STREAM;
+	}
+
+	ColumnCodec OBJECT = (resultSet, column, generator) -> {
+		final Object value = resultSet.getObject(column);
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeObject(value);
+		}
+	};
+
+	ColumnCodec STRING = (resultSet, column, generator) -> {
+		final String value = resultSet.getString(column);
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeString(value);
+		}
+	};
+
+	/**
+	 * Character data copied into the JSON string in chunks as it is read, so that a large CLOB or TEXT value is
+	 * not held in memory.
+	 */
+	ColumnCodec CHARACTER_STREAM = (resultSet, column, generator) -> {
+		try (Reader value = resultSet.getCharacterStream(column)) {
+			if (value == null) {
+				generator.writeNull();
+			} else {
+				generator.writeString(value, -1);
+			}
+		}
+	};
+
+	/**
+	 * Binary data Base64 encoded in chunks as it is read, as Jackson writes a byte array.
+	 */
+	ColumnCodec BINARY_STREAM = (resultSet, column, generator) -> {
+		try (InputStream value = resultSet.getBinaryStream(column)) {
+			if (value == null) {
+				generator.writeNull();
+			} else {
+				generator.writeBinary(value, -1);
+			}
+		}
+	};
+
+	ColumnCodec INT = (resultSet, column, generator) -> {
+		final int value = resultSet.getInt(column);
+		if (resultSet.wasNull()) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value);
+		}
+	};
+
+	ColumnCodec LONG = (resultSet, column, generator) -> {
+		final long value = resultSet.getLong(column);
+		if (resultSet.wasNull()) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value);
+		}
+	};
+
+	ColumnCodec DECIMAL = (resultSet, column, generator) -> {
+		final BigDecimal value = resultSet.getBigDecimal(column);
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value);
+		}
+	};
+
+	ColumnCodec FLOAT = (resultSet, column, generator) -> {
+		final float value = resultSet.getFloat(column);
+		if (resultSet.wasNull()) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value);
+		}
+	};
+
+	ColumnCodec DOUBLE = (resultSet, column, generator) -> {
+		final double value = resultSet.getDouble(column);
+		if (resultSet.wasNull()) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value);
+		}
+	};
+
+	ColumnCodec BOOLEAN = (resultSet, column, generator) -> {
+		final boolean value = resultSet.getBoolean(column);
+		if (resultSet.wasNull()) {
+			generator.writeNull();
+		} else {
+			generator.writeBoolean(value);
+		}
+	};
+
+	/**
+	 * Milliseconds since the epoch, as Jackson writes a {@link Timestamp} by default.
+	 */
+	ColumnCodec TIMESTAMP = (resultSet, column, generator) -> {
+		final Timestamp value = resultSet.getTimestamp(column);
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeNumber(value.getTime());
+		}
+	};
+
+	ColumnCodec OFFSET_TIMESTAMP = (resultSet, column, generator) -> {
+		final OffsetDateTime value = resultSet.getObject(column, OffsetDateTime.class);
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeString(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(value));
+		}
+	};
+
+	/**
+	 * The JSON text of the column written as it is.
+	 */
+	ColumnCodec JSON = (resultSet, column, generator) -> {
+		final String value = resultSet.getString(column);
+		if (value == null) {
+			generator.writeNull();
+		} else {
+			generator.writeRawValue(value);
+		}
+	};
+
+	/**
+	 * The codec for a column of a result set.
+	 */
+	static ColumnCodec of(final ResultSetMetaData metaData, final int column) throws SQLException {
+		switch (metaData.getColumnType(column)) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+			// PostgreSQL text is reported as VARCHAR
+			return "text".equalsIgnoreCase(metaData.getColumnTypeName(column)) ? CHARACTER_STREAM : STRING;
+		case Types.LONGVARCHAR:
+		case Types.LONGNVARCHAR:
+		case Types.CLOB:
+		case Types.NCLOB:
+			return CHARACTER_STREAM;
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return BINARY_STREAM;
+		case Types.TINYINT:
+		case Types.SMALLINT:
+			return INT;
+		case Types.INTEGER:
+			// An unsigned INTEGER may not fit in an int
+			return metaData.isSigned(column) ? INT : LONG;
+		case Types.BIGINT:
+			return metaData.isSigned(column) ? LONG : DECIMAL;
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			final int precision = metaData.getPrecision(column);
+			return (metaData.getScale(column) == 0 && precision > 0 && precision <= LONG_DIGITS) ? LONG : DECIMAL;
+		case Types.REAL:
+		case ORACLE_BINARY_FLOAT:
+			return FLOAT;
+		case Types.FLOAT:
+		case Types.DOUBLE:
+		case ORACLE_BINARY_DOUBLE:
+			return DOUBLE;
+		case Types.BOOLEAN:
+			return BOOLEAN;
+		case Types.BIT:
+			// BIT(n) with more than one bit is read as bytes
+			return (metaData.getPrecision(column) <= 1) ? BOOLEAN : OBJECT;
+		case Types.TIMESTAMP:
+		case ORACLE_TIMESTAMPLTZ:
+			return TIMESTAMP;
+		case Types.TIMESTAMP_WITH_TIMEZONE:
+		case ORACLE_TIMESTAMPTZ:
+			return OFFSET_TIMESTAMP;
+		case Types.OTHER:
+			final String typeName = metaData.getColumnTypeName(column);
+			if ("uuid".equalsIgnoreCase(typeName)) {
+				return STRING;
+			}
+			if ("json".equalsIgnoreCase(typeName) || "jsonb".equalsIgnoreCase(typeName)) {
+				return JSON;
+			}
+			return OBJECT;
+		default:
+			return OBJECT;
+		}
+	}
+}
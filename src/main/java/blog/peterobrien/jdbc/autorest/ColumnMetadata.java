@@ -0,0 +1,47 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * A column of a TABLE or VIEW as reported by {@link java.sql.DatabaseMetaData#getColumns}.
+ */
+public class ColumnMetadata {
+	ColumnMetadata(final ResultSet resultSet) throws SQLException {
+		columnName = resultSet.getString("COLUMN_NAME");
+		dataType = resultSet.getInt("DATA_TYPE");
+		typeName = resultSet.getString("TYPE_NAME");
+		ordinalPosition = resultSet.getInt("ORDINAL_POSITION");
+		columnSize = resultSet.getInt("COLUMN_SIZE");
+		decimalDigits = resultSet.getInt("DECIMAL_DIGITS");
+	}
+
+	/**
+	 * The type as it is declared, with the length of character and binary columns and the precision and scale of
+	 * decimal columns, for example <code>VARCHAR(20)</code>.
+	 */
+	String declaredType() {
+		switch (dataType) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.BINARY:
+		case Types.VARBINARY:
+			return (columnSize > 0) ? typeName + "(" + columnSize + ")" : typeName;
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return (columnSize > 0) ? typeName + "(" + columnSize + ", " + decimalDigits + ")" : typeName;
+		default:
+			return typeName;
+		}
+	}
+
+	final String columnName;
+	final int dataType;
+	final String typeName;
+	final int ordinalPosition;
+	final int columnSize;
+	final int decimalDigits;
+}
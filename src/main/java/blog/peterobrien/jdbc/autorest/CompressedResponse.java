@@ -0,0 +1,106 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A response whose body is compressed with the negotiated content coding when it is larger than the threshold. The
+ * body must be completed with {@link #finish()} if the stream or writer has not been closed.
+ */
+class CompressedResponse extends HttpServletResponseWrapper {
+	CompressedResponse(final HttpServletResponse response, final CompressingOutputStream.Encoding encoding,
+			final int threshold) {
+		super(response);
+		this.encoding = encoding;
+		this.threshold = threshold;
+		response.addHeader("Vary", "Accept-Encoding");
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("getWriter() has already been called");
+		}
+		if (outputStream == null) {
+			final HttpServletResponse response = (HttpServletResponse) getResponse();
+			final ServletOutputStream out = response.getOutputStream();
+			final CompressingOutputStream compressing = new CompressingOutputStream(out, encoding, threshold,
+					e -> response.setHeader("Content-Encoding", e.token));
+			outputStream = new ServletOutputStream() {
+				@Override
+				public void write(final int b) throws IOException {
+					compressing.write(b);
+				}
+
+				@Override
+				public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+					compressing.write(bytes, offset, length);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					compressing.flush();
+				}
+
+				@Override
+				public void close() throws IOException {
+					compressing.close();
+				}
+
+				@Override
+				public boolean isReady() {
+					return out.isReady();
+				}
+
+				@Override
+				public void setWriteListener(final WriteListener writeListener) {
+					out.setWriteListener(writeListener);
+				}
+			};
+		}
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			final ServletOutputStream out = getOutputStream();
+			writer = new PrintWriter(new OutputStreamWriter(out, Charset.forName(getCharacterEncoding())));
+		}
+		return writer;
+	}
+
+	/**
+	 * Compressed bytes only have a known length after they are written.
+	 */
+	@Override
+	public void setContentLength(final int length) {
+	}
+
+	@Override
+	public void setContentLengthLong(final long length) {
+	}
+
+	/**
+	 * Write any bytes held back and complete the compressed body.
+	 */
+	void finish() throws IOException {
+		if (writer != null) {
+			writer.close();
+		} else if (outputStream != null) {
+			outputStream.close();
+		}
+	}
+
+	private final CompressingOutputStream.Encoding encoding;
+	private final int threshold;
+	private ServletOutputStream outputStream;
+	private PrintWriter writer;
+}
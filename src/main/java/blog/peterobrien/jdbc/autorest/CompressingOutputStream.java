@@ -0,0 +1,202 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Holds back the first bytes of a response, up to the threshold, and only compresses when the response is larger.
+ * A smaller response is written as it is when the stream is closed. Once compressing, bytes are deflated as they are
+ * written and a flush emits everything written so far, so streamed responses are not buffered in full.
+ * {@link Deflater} instances are pooled because their native memory is costly to allocate for each response.
+ */
+class CompressingOutputStream extends OutputStream {
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+	private static final int POOL_SIZE = 64;
+	private static final Queue<Deflater> GZIP_DEFLATERS = new ConcurrentLinkedQueue<Deflater>();
+	private static final Queue<Deflater> ZLIB_DEFLATERS = new ConcurrentLinkedQueue<Deflater>();
+
+	/**
+	 * The content codings supported, in order of preference.
+	 */
+	enum Encoding {
+		GZIP("gzip"),
+		DEFLATE("deflate");
+
+		Encoding(final String token) {
+			this.token = token;
+		}
+
+		final String token;
+	}
+
+	/**
+	 * Called when the response is to be compressed, before any bytes are written, to set the Content-Encoding.
+	 */
+	interface Listener {
+		void compressing(Encoding encoding);
+	}
+
+	CompressingOutputStream(final OutputStream out, final Encoding encoding, final int threshold,
+			final Listener listener) {
+		this.out = out;
+		this.encoding = encoding;
+		this.buffer = new byte[threshold];
+		this.listener = listener;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+		if (deflaterStream == null) {
+			if (buffered + length <= buffer.length) {
+				System.arraycopy(bytes, offset, buffer, buffered, length);
+				buffered += length;
+				return;
+			}
+			startCompression();
+		}
+		deflaterStream.write(bytes, offset, length);
+		if (crc != null) {
+			crc.update(bytes, offset, length);
+		}
+	}
+
+	private void startCompression() throws IOException {
+		listener.compressing(encoding);
+		final boolean gzip = encoding == Encoding.GZIP;
+		deflater = acquire(gzip);
+		if (gzip) {
+			out.write(GZIP_HEADER);
+			crc = new CRC32();
+		}
+		deflaterStream = new DeflaterOutputStream(out, deflater, 8192, true);
+		if (buffered > 0) {
+			deflaterStream.write(buffer, 0, buffered);
+			if (crc != null) {
+				crc.update(buffer, 0, buffered);
+			}
+		}
+	}
+
+	/**
+	 * Bytes held back below the threshold stay held back, otherwise the compressed bytes written so far are flushed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (deflaterStream != null) {
+			deflaterStream.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (deflaterStream == null) {
+				out.write(buffer, 0, buffered);
+			} else {
+				deflaterStream.finish();
+				if (crc != null) {
+					writeInt((int) crc.getValue());
+					writeInt((int) deflater.getBytesRead());
+				}
+			}
+		} finally {
+			if (deflater != null) {
+				release(deflater, encoding == Encoding.GZIP);
+				deflater = null;
+			}
+			out.close();
+		}
+	}
+
+	/**
+	 * Little endian, as the gzip trailer requires.
+	 */
+	private void writeInt(final int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+
+	/**
+	 * gzip wraps raw deflate data in its own header and trailer while the deflate content coding is zlib format.
+	 */
+	private static Deflater acquire(final boolean gzip) {
+		final Deflater deflater = (gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS).poll();
+		return (deflater != null) ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+	}
+
+	private static void release(final Deflater deflater, final boolean gzip) {
+		final Queue<Deflater> pool = gzip ? GZIP_DEFLATERS : ZLIB_DEFLATERS;
+		if (pool.size() < POOL_SIZE) {
+			deflater.reset();
+			pool.offer(deflater);
+		} else {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * The preferred encoding accepted by the Accept-Encoding header, or null if neither is acceptable.
+	 */
+	static Encoding negotiate(final String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		Encoding accepted = null;
+		for (String coding : acceptEncoding.split(",")) {
+			final String[] parameters = coding.split(";");
+			if (!acceptable(parameters)) {
+				continue;
+			}
+			final String token = parameters[0].trim();
+			for (Encoding encoding : Encoding.values()) {
+				if (encoding.token.equalsIgnoreCase(token) && (accepted == null || encoding.ordinal() < accepted.ordinal())) {
+					accepted = encoding;
+				}
+			}
+		}
+		return accepted;
+	}
+
+	/**
+	 * A coding is not acceptable when its quality value is zero.
+	 */
+	private static boolean acceptable(final String[] parameters) {
+		for (int i = 1; i < parameters.length; i++) {
+			final String parameter = parameters[i].trim();
+			if (parameter.startsWith("q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2)) > 0;
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private final OutputStream out;
+	private final Encoding encoding;
+	private final byte[] buffer;
+	private final Listener listener;
+	private int buffered;
+	private Deflater deflater;
+	private DeflaterOutputStream deflaterStream;
+	private CRC32 crc;
+	private boolean closed;
+}
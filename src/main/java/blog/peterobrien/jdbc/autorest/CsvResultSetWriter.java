@@ -0,0 +1,208 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Writes rows as RFC 4180 CSV as they are read from the {@link ResultSet}. The header is the column labels. Values
+ * are copied character by character into a buffer which is encoded when it is full, so writing a row does not
+ * allocate beyond the strings returned by the driver. The way each column is read is chosen once from its
+ * {@link ColumnCodec}: character LOBs are streamed, binary data is Base64 encoded as it is read, as in JSON, and
+ * integers are written without converting them to strings.
+ */
+public class CsvResultSetWriter {
+	private static final char[] LINE_BREAK = { '\r', '\n' };
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * @param maxRows the number of rows to write, or -1 for every row
+	 */
+	void writeRows(final ResultSet resultSet, final OutputStream out, final int maxRows) throws SQLException, IOException {
+		final Encoder encoder = new Encoder(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		final ResultSetMetaData metaData = resultSet.getMetaData();
+		final int columnCount = metaData.getColumnCount();
+		for (int i = 1; i <= columnCount; i++) {
+			if (i > 1) {
+				encoder.write(',');
+			}
+			encoder.writeField(metaData.getColumnLabel(i));
+		}
+		encoder.write(LINE_BREAK);
+		final ColumnCodec[] codecs = new ColumnCodec[columnCount];
+		for (int i = 1; i <= columnCount; i++) {
+			codecs[i - 1] = ColumnCodec.of(metaData, i);
+		}
+
+		int rowCount = 0;
+		while ((maxRows < 0 || rowCount < maxRows) && resultSet.next()) {
+			for (int i = 1; i <= columnCount; i++) {
+				if (i > 1) {
+					encoder.write(',');
+				}
+				writeField(resultSet, i, codecs[i - 1], encoder);
+			}
+			encoder.write(LINE_BREAK);
+			rowCount++;
+			if (rowCount % JsonResultSetWriter.FLUSH_ROWS == 0) {
+				encoder.flush();
+			}
+		}
+		encoder.flush();
+	}
+
+	private static void writeField(final ResultSet resultSet, final int column, final ColumnCodec codec,
+			final Encoder encoder) throws SQLException, IOException {
+		if (codec == ColumnCodec.CHARACTER_STREAM) {
+			try (Reader value = resultSet.getCharacterStream(column)) {
+				if (value != null) {
+					encoder.writeField(value);
+				}
+			}
+		} else if (codec == ColumnCodec.BINARY_STREAM) {
+			try (InputStream value = resultSet.getBinaryStream(column)) {
+				if (value != null) {
+					encoder.writeBase64(value);
+				}
+			}
+		} else if (codec == ColumnCodec.INT || codec == ColumnCodec.LONG) {
+			final long value = resultSet.getLong(column);
+			if (!resultSet.wasNull()) {
+				encoder.write(value);
+			}
+		} else if (codec == ColumnCodec.BOOLEAN) {
+			final boolean value = resultSet.getBoolean(column);
+			if (!resultSet.wasNull()) {
+				encoder.writeField(value ? "true" : "false");
+			}
+		} else {
+			encoder.writeField(resultSet.getString(column));
+		}
+	}
+
+	/**
+	 * Buffered character output with RFC 4180 quoting. A field is quoted only when it contains a comma, quote or
+	 * line break, and a null value is an empty field.
+	 */
+	private static final class Encoder {
+		private final Writer writer;
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private final char[] digits = new char[20];
+		private final char[] chunk = new char[BUFFER_SIZE];
+		private int position;
+
+		Encoder(final Writer writer) {
+			this.writer = writer;
+		}
+
+		void writeField(final String value) throws IOException {
+			if (value == null) {
+				return;
+			}
+			final int length = value.length();
+			boolean quote = false;
+			for (int i = 0; i < length && !quote; i++) {
+				final char c = value.charAt(i);
+				quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+			}
+			if (quote) {
+				write('"');
+			}
+			for (int i = 0; i < length; i++) {
+				final char c = value.charAt(i);
+				if (c == '"') {
+					write('"');
+				}
+				write(c);
+			}
+			if (quote) {
+				write('"');
+			}
+		}
+
+		/**
+		 * Write a field as it is read. The length is not known in advance so the field is always quoted.
+		 */
+		void writeField(final Reader value) throws IOException {
+			write('"');
+			int length;
+			while ((length = value.read(chunk)) >= 0) {
+				for (int i = 0; i < length; i++) {
+					if (chunk[i] == '"') {
+						write('"');
+					}
+					write(chunk[i]);
+				}
+			}
+			write('"');
+		}
+
+		/**
+		 * Write binary data Base64 encoded as it is read. The encoding does not need quoting.
+		 */
+		void writeBase64(final InputStream value) throws IOException {
+			try (OutputStream base64 = Base64.getEncoder().wrap(new OutputStream() {
+				@Override
+				public void write(final int b) throws IOException {
+					Encoder.this.write((char) b);
+				}
+			})) {
+				value.transferTo(base64);
+			}
+		}
+
+		/**
+		 * Write the digits of a number without creating a string.
+		 */
+		void write(final long value) throws IOException {
+			if (value == Long.MIN_VALUE) {
+				writeField(Long.toString(value));
+				return;
+			}
+			long remaining = value;
+			if (remaining < 0) {
+				write('-');
+				remaining = -remaining;
+			}
+			int length = 0;
+			do {
+				digits[length++] = (char) ('0' + remaining % 10);
+				remaining /= 10;
+			} while (remaining > 0);
+			while (length > 0) {
+				write(digits[--length]);
+			}
+		}
+
+		void write(final char c) throws IOException {
+			if (position == buffer.length) {
+				drain();
+			}
+			buffer[position++] = c;
+		}
+
+		void write(final char[] chars) throws IOException {
+			for (char c : chars) {
+				write(c);
+			}
+		}
+
+		private void drain() throws IOException {
+			writer.write(buffer, 0, position);
+			position = 0;
+		}
+
+		void flush() throws IOException {
+			drain();
+			writer.flush();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.List;
+
+/**
+ * IBM DB2 for Linux, UNIX and Windows 11.1 and later.
+ */
+public class DB2Dialect extends SqlDialect.LimitOffset {
+	@Override
+	public boolean supports(final String productName, final int majorVersion) {
+		// For example DB2/LINUXX8664 or DB2/NT64
+		return productName.startsWith("DB2");
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	@Override
+	public String upsert(final String qualifiedName, final List<String> keyColumns, final List<String> columns,
+			final List<String> columnTypes) {
+		// DB2 does not infer the type of an untyped parameter marker in a values clause
+		return SqlDialects.merge(qualifiedName, keyColumns, columns,
+				SqlDialects.typedValuesSource(columns, columnTypes));
+	}
+
+	@Override
+	public boolean supportsReturning() {
+		return true;
+	}
+
+	@Override
+	public String insertReturning(final String qualifiedName, final List<String> columns) {
+		return "select * from final table (insert into " + qualifiedName + " (" + String.join(", ", columns)
+				+ ") values (" + "?, ".repeat(columns.size() - 1) + "?))";
+	}
+
+	@Override
+	public String rowEstimate() {
+		return "select card from syscat.tables where tabschema = ? and tabname = ?";
+	}
+
+	@Override
+	public String toString() {
+		return "DB2";
+	}
+}
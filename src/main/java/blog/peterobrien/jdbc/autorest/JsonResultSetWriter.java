@@ -0,0 +1,181 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Writes rows to a {@link JsonGenerator} as they are read from the {@link ResultSet} so that the response is
+ * streamed to the client rather than built in memory.
+ */
+public class JsonResultSetWriter {
+	private static final SerializedString LINE_SEPARATOR = new SerializedString("\n");
+	/**
+	 * Number of rows written between flushes when streaming rows without an envelope.
+	 */
+	static final int FLUSH_ROWS = 1000;
+
+	/**
+	 * Finds the {@link RowCodec} for a result set.
+	 */
+	@FunctionalInterface
+	interface RowCodecs {
+		RowCodec of(ResultSet resultSet) throws SQLException;
+	}
+
+	private final RowCodecs rowCodecs;
+
+	/**
+	 * Write rows with a plan made for each result set.
+	 */
+	public JsonResultSetWriter() {
+		this(resultSet -> RowCodec.of(resultSet.getMetaData()));
+	}
+
+	/**
+	 * @param rowCodecs finds the plan for each result set, for example the one kept with the queries it came from
+	 */
+	JsonResultSetWriter(final RowCodecs rowCodecs) {
+		this.rowCodecs = rowCodecs;
+	}
+
+	/**
+	 * Write a page of a collection using the envelope
+	 * <code>{"items":[...],"limit":n,"offset":n,"count":n}</code>. The fields that depend on the number of rows are
+	 * written after the items.
+	 */
+	void writeCollection(final ResultSet resultSet, final JsonGenerator generator, final Object limit,
+			final Object offset) throws SQLException, IOException {
+		writeCollection(resultSet, generator, limit, offset, null);
+	}
+
+	/**
+	 * Write a page of a collection with <code>"totalResults":n</code> after the count, when the total is not null.
+	 */
+	void writeCollection(final ResultSet resultSet, final JsonGenerator generator, final Object limit,
+			final Object offset, final Long totalResults) throws SQLException, IOException {
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("items");
+		int rowCount = 0;
+		while (resultSet.next()) {
+			generator.writeStartObject();
+			writeRow(resultSet, generator);
+			generator.writeEndObject();
+			rowCount++;
+		}
+		generator.writeEndArray();
+		generator.writeObjectField("limit", limit);
+		generator.writeObjectField("offset", offset);
+		generator.writeNumberField("count", rowCount);
+		writeTotalResults(generator, totalResults);
+		generator.writeEndObject();
+	}
+
+	private static void writeTotalResults(final JsonGenerator generator, final Long totalResults) throws IOException {
+		if (totalResults != null) {
+			generator.writeNumberField("totalResults", totalResults);
+		}
+	}
+
+	/**
+	 * Write a page of a collection queried with keyset pagination using the envelope
+	 * <code>{"items":[...],"limit":n,"count":n,"hasMore":true,"next":"token"}</code>. The ResultSet is expected to
+	 * have one more row than the limit if there are more rows. The <code>next</code> token encodes the primary key
+	 * value of the last item and is only written when there are more rows.
+	 */
+	void writeKeysetPage(final ResultSet resultSet, final JsonGenerator generator, final int limit,
+			final PrimaryKeyStructure pkStructure, final Long totalResults) throws SQLException, IOException {
+		final Object[] lastKey = new Object[pkStructure.elements.size()];
+		final int[] keyTypes = new int[lastKey.length];
+		for (int i = 0; i < keyTypes.length; i++) {
+			keyTypes[i] = resultSet.getMetaData().getColumnType(resultSet.findColumn(pkStructure.elements.get(i).columnName));
+		}
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("items");
+		int rowCount = 0;
+		boolean hasMore = false;
+		while (resultSet.next()) {
+			if (rowCount == limit) {
+				hasMore = true;
+				break;
+			}
+			generator.writeStartObject();
+			writeRow(resultSet, generator);
+			generator.writeEndObject();
+			for (int i = 0; i < lastKey.length; i++) {
+				lastKey[i] = KeysetToken.keyValue(resultSet, pkStructure.elements.get(i).columnName, keyTypes[i]);
+			}
+			rowCount++;
+		}
+		generator.writeEndArray();
+		generator.writeNumberField("limit", limit);
+		generator.writeNumberField("count", rowCount);
+		generator.writeBooleanField("hasMore", hasMore);
+		if (hasMore) {
+			generator.writeStringField("next", KeysetToken.encode(lastKey));
+		}
+		writeTotalResults(generator, totalResults);
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Write the current row of the ResultSet as a JSON object.
+	 */
+	void writeItem(final ResultSet resultSet, final JsonGenerator generator) throws SQLException, IOException {
+		writeItem(resultSet, generator, null);
+	}
+
+	/**
+	 * Write the current row of the ResultSet as a JSON object with LOB columns written as links relative to the item
+	 * URL, when it is not null.
+	 */
+	void writeItem(final ResultSet resultSet, final JsonGenerator generator, final String itemURL)
+			throws SQLException, IOException {
+		generator.writeStartObject();
+		codec(resultSet).write(resultSet, generator, itemURL);
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Write each row as a JSON object on its own line, flushing every {@link #FLUSH_ROWS} rows so that the client
+	 * receives the rows as they are read.
+	 * @param maxRows the number of rows to write, or -1 for every row
+	 */
+	void writeLines(final ResultSet resultSet, final JsonGenerator generator, final int maxRows)
+			throws SQLException, IOException {
+		generator.setRootValueSeparator(LINE_SEPARATOR);
+		int rowCount = 0;
+		while ((maxRows < 0 || rowCount < maxRows) && resultSet.next()) {
+			writeItem(resultSet, generator);
+			rowCount++;
+			if (rowCount % FLUSH_ROWS == 0) {
+				generator.flush();
+			}
+		}
+		if (rowCount > 0) {
+			generator.writeRaw('\n');
+		}
+	}
+
+	/**
+	 * Write each column of the current row as a field of the enclosing JSON object. The {@link RowCodec} is looked up
+	 * once for each result set rather than for each row.
+	 */
+	void writeRow(final ResultSet resultSet, final JsonGenerator generator) throws SQLException, IOException {
+		codec(resultSet).write(resultSet, generator);
+	}
+
+	private RowCodec codec(final ResultSet resultSet) throws SQLException {
+		if (resultSet != this.codecResultSet) {
+			this.codec = rowCodecs.of(resultSet);
+			this.codecResultSet = resultSet;
+		}
+		return this.codec;
+	}
+
+	private ResultSet codecResultSet;
+	private RowCodec codec;
+}
@@ -0,0 +1,132 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Opaque continuation token for keyset pagination. The token is the URL safe Base64 encoding of a JSON array of the
+ * primary key values of the last row on a page. Numbers are held as JSON numbers, date and time values as ISO 8601
+ * text and binary values as Base64 text, and each value is bound back as the type of its key column.
+ */
+public final class KeysetToken {
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+	private KeysetToken() {
+	}
+
+	static String encode(final Object[] keyValues) throws IOException {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(keyValues));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the token was not produced by {@link #encode(Object[])}.
+	 */
+	static Object[] decode(final String token) {
+		try {
+			return MAPPER.readValue(Base64.getUrlDecoder().decode(token), Object[].class);
+		} catch (IOException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid continuation token: " + token);
+		}
+	}
+
+	/**
+	 * The value of a key column of the current row in the form it is held in a token.
+	 * @param sqlType the JDBC type of the column
+	 */
+	static Object keyValue(final ResultSet resultSet, final String column, final int sqlType) throws SQLException {
+		switch (sqlType) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.OTHER:
+			return resultSet.getString(column);
+		case Types.DATE:
+			final Date date = resultSet.getDate(column);
+			return (date == null) ? null : date.toLocalDate().toString();
+		case Types.TIME:
+			final Time time = resultSet.getTime(column);
+			return (time == null) ? null : time.toLocalTime().toString();
+		case Types.TIMESTAMP:
+		case ColumnCodec.ORACLE_TIMESTAMPLTZ:
+			final Timestamp timestamp = resultSet.getTimestamp(column);
+			return (timestamp == null) ? null : timestamp.toLocalDateTime().toString();
+		case Types.TIMESTAMP_WITH_TIMEZONE:
+		case ColumnCodec.ORACLE_TIMESTAMPTZ:
+			final OffsetDateTime offsetDateTime = resultSet.getObject(column, OffsetDateTime.class);
+			return (offsetDateTime == null) ? null : offsetDateTime.toString();
+		case Types.BINARY:
+		case Types.VARBINARY:
+			final byte[] bytes = resultSet.getBytes(column);
+			return (bytes == null) ? null : Base64.getEncoder().encodeToString(bytes);
+		default:
+			return resultSet.getObject(column);
+		}
+	}
+
+	/**
+	 * Bind a value decoded from a token as the type of its key column, the reverse of
+	 * {@link #keyValue(ResultSet, String, int)}.
+	 * @param sqlType the JDBC type of the column, or {@link Types#NULL} if it is not known
+	 * @throws IllegalArgumentException if the value is not of the form held for the type
+	 */
+	static void bind(final PreparedStatement statement, final int index, final Object value, final int sqlType)
+			throws SQLException {
+		if (sqlType == Types.NULL) {
+			statement.setObject(index, value);
+			return;
+		}
+		if (value == null) {
+			statement.setNull(index, sqlType);
+			return;
+		}
+		try {
+			switch (sqlType) {
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+				statement.setString(index, value.toString());
+				break;
+			case Types.DATE:
+				statement.setDate(index, Date.valueOf(LocalDate.parse(value.toString())));
+				break;
+			case Types.TIME:
+				statement.setTime(index, Time.valueOf(LocalTime.parse(value.toString())));
+				break;
+			case Types.TIMESTAMP:
+			case ColumnCodec.ORACLE_TIMESTAMPLTZ:
+				statement.setTimestamp(index, Timestamp.valueOf(LocalDateTime.parse(value.toString())));
+				break;
+			case Types.TIMESTAMP_WITH_TIMEZONE:
+			case ColumnCodec.ORACLE_TIMESTAMPTZ:
+				statement.setObject(index, OffsetDateTime.parse(value.toString()));
+				break;
+			case Types.BINARY:
+			case Types.VARBINARY:
+				statement.setBytes(index, Base64.getDecoder().decode(value.toString()));
+				break;
+			default:
+				statement.setObject(index, value, sqlType);
+			}
+		} catch (DateTimeParseException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid continuation token value: " + value);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package blog.peterobrien.jdbc.autorest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import oracle.dbtools.plugin.api.di.annotations.ApplicationScoped;
+import oracle.dbtools.plugin.api.di.annotations.Provides;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of {@link ObjectMetadata} for each pool. Entries are keyed by the JDBC URL of the pool, the database user,
+ * and the owner, identifier and type of the object so that table/view visibility and primary key lookups are
+ * not repeated for every request. Objects which are not visible are cached for a shorter period.
+ */
+@ApplicationScoped
+@Provides
+public class MetadataCache {
+
+    static final long VISIBLE_TTL_MINUTES = 10;
+    static final long NOT_VISIBLE_TTL_SECONDS = 30;
+    static final long ESTIMATE_TTL_MINUTES = 5;
+    /**
+     * Cached when the database has no statistics for the object.
+     */
+    static final long NO_ESTIMATE = -1;
+
+    private final Cache<Key, ObjectMetadata> cache;
+    private final Cache<Key, Long> estimates = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(ESTIMATE_TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
+    private final ConcurrentMap<String, SqlDialect> dialects = new ConcurrentHashMap<String, SqlDialect>();
+
+    public MetadataCache() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(10000) // Maximum number of objects across all pools
+                .expireAfter(new Expiry<Key, ObjectMetadata>() {
+                    @Override
+                    public long expireAfterCreate(Key key, ObjectMetadata value, long currentTime) {
+                        return value.isVisible() ? TimeUnit.MINUTES.toNanos(VISIBLE_TTL_MINUTES)
+                                : TimeUnit.SECONDS.toNanos(NOT_VISIBLE_TTL_SECONDS);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, ObjectMetadata value, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, ObjectMetadata value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Retrieves the cached metadata for an object.
+     *
+     * @return the cached metadata, {@link ObjectMetadata#NOT_VISIBLE} or null if there is no entry
+     */
+    ObjectMetadata get(final String pool, final String user, final ServiceDefinition sd) {
+        return cache.getIfPresent(new Key(pool, user, sd));
+    }
+
+    void put(final String pool, final String user, final ServiceDefinition sd, final ObjectMetadata metadata) {
+        cache.put(new Key(pool, user, sd), metadata);
+    }
+
+    /**
+     * Retrieves the cached estimate of the number of rows in an object.
+     *
+     * @return the estimate, {@link #NO_ESTIMATE} or null if there is no entry
+     */
+    Long estimate(final String pool, final String user, final ServiceDefinition sd) {
+        return estimates.getIfPresent(new Key(pool, user, sd));
+    }
+
+    void putEstimate(final String pool, final String user, final ServiceDefinition sd, final long estimate) {
+        estimates.put(new Key(pool, user, sd), estimate);
+    }
+
+    /**
+     * The SQL dialect for a pool, detected from the database product name and version the first time the pool is
+     * used.
+     */
+    SqlDialect dialect(final String pool, final DatabaseMetaData dbMetadata) throws SQLException {
+        SqlDialect dialect = dialects.get(pool);
+        if (dialect == null) {
+            dialect = SqlDialects.detect(dbMetadata);
+            dialects.putIfAbsent(pool, dialect);
+        }
+        return dialect;
+    }
+
+    /**
+     * Discard the cached metadata for an object in every pool. Use after DDL on the object.
+     *
+     * @param owner the object owner, or null if the object is not qualified by owner
+     * @param identifier the object identifier
+     */
+    public void invalidate(final String owner, final String identifier) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.owner, owner) && Objects.equals(key.identifier, identifier));
+        estimates.asMap().keySet().removeIf(key -> Objects.equals(key.owner, owner) && Objects.equals(key.identifier, identifier));
+    }
+
+    /**
+     * Discard all cached metadata for a pool.
+     *
+     * @param pool the JDBC URL of the pool
+     */
+    public void invalidatePool(final String pool) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.pool, pool));
+        estimates.asMap().keySet().removeIf(key -> Objects.equals(key.pool, pool));
+        dialects.remove(pool);
+    }
+
+    /**
+     * Discard all cached metadata.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        estimates.invalidateAll();
+        dialects.clear();
+    }
+
+    private record Key(String pool, String user, String owner, String identifier, SupportedObjectType type) {
+        Key(final String pool, final String user, final ServiceDefinition sd) {
+            this(pool, user, sd.owner, sd.identifier, sd.type);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MySQL and MariaDB.
+ */
+public class MySQLDialect extends SqlDialect.LimitOffset {
+	@Override
+	public boolean supports(final String productName, final int majorVersion) {
+		return productName.equals("MySQL") || productName.equals("MariaDB");
+	}
+
+	@Override
+	public String quote(final String identifier) {
+		return '`' + identifier.replace("`", "``") + '`';
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	/**
+	 * An insert which updates the row when it duplicates the primary key. When only key columns are given the key
+	 * is set to itself, which leaves the existing row unchanged.
+	 */
+	@Override
+	public String upsert(final String qualifiedName, final List<String> keyColumns, final List<String> columns,
+			final List<String> columnTypes) {
+		final List<String> assignments = new ArrayList<String>();
+		for (String column : columns) {
+			if (!keyColumns.contains(column)) {
+				assignments.add(column + " = values(" + column + ")");
+			}
+		}
+		if (assignments.isEmpty()) {
+			assignments.add(keyColumns.get(0) + " = " + keyColumns.get(0));
+		}
+		return "insert into " + qualifiedName + " (" + String.join(", ", columns) + ") values ("
+				+ "?, ".repeat(columns.size() - 1) + "?) on duplicate key update " + String.join(", ", assignments);
+	}
+
+	@Override
+	public boolean supportsReturning() {
+		return false;
+	}
+
+	/**
+	 * MySQL can not return the inserted row so the response is the bound values with the auto increment key. Column
+	 * defaults are not included.
+	 */
+	@Override
+	public boolean insertedRowFromValues() {
+		return true;
+	}
+
+	/**
+	 * MySQL Connector/J reads the whole result into memory unless the fetch size is Integer.MIN_VALUE, which streams
+	 * the rows one at a time.
+	 */
+	@Override
+	public int exportFetchSize(final int fetchSize) {
+		return Integer.MIN_VALUE;
+	}
+
+	@Override
+	public String rowEstimate() {
+		return "select table_rows from information_schema.tables where table_schema = ? and table_name = ?";
+	}
+
+	@Override
+	public String toString() {
+		return "MySQL";
+	}
+}
@@ -0,0 +1,164 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dictionary information for a database object referenced by an x-autorest definition. Resolved once and held in the
+ * {@link MetadataCache} so that servicing a request does not require catalog queries.
+ */
+public class ObjectMetadata {
+	/**
+	 * Marker for an object which does not exist or is not visible to the database user.
+	 */
+	static final ObjectMetadata NOT_VISIBLE = new ObjectMetadata(null, null, null, Collections.emptyList(), null);
+
+	ObjectMetadata(final String objectType, final String objectName, final PrimaryKeyStructure pkStructure,
+			final List<ColumnMetadata> columns, final SqlTemplates templates) {
+		this.objectType = objectType;
+		this.objectName = objectName;
+		this.pkStructure = pkStructure;
+		this.columns = columns;
+		this.templates = templates;
+		this.columnNames = new String[columns.size()];
+		for (int i = 0; i < columnNames.length; i++) {
+			columnNames[i] = columns.get(i).columnName;
+			columnIndexes.put(columnNames[i], i);
+			columnsByName.putIfAbsent(columnNames[i].toUpperCase(Locale.ROOT), columnNames[i]);
+		}
+	}
+
+	/**
+	 * Query the database dictionary for the object described by the service definition.
+	 * @return the object metadata or {@link #NOT_VISIBLE} if the database user can not see the object.
+	 */
+	static ObjectMetadata load(final DatabaseMetaData dbMetadata, final ServiceDefinition sd, final SqlDialect dialect)
+			throws SQLException {
+		try (ResultSet resultSet = dbMetadata.getTables(null, sd.owner, sd.identifier, sd.type.toStringArray());) {
+			if (!resultSet.next()) {
+				return NOT_VISIBLE;
+			}
+			// The owner and identifier are patterns, so the keys and columns are queried for the object found rather
+			// than the names given, otherwise a missing owner would merge the columns of objects in every schema
+			final String objectType = resultSet.getString("TABLE_TYPE");
+			final String catalog = resultSet.getString("TABLE_CAT");
+			final String schema = resultSet.getString("TABLE_SCHEM");
+			final String objectName = resultSet.getString("TABLE_NAME");
+			PrimaryKeyStructure pkStructure = null;
+			if (objectType.equalsIgnoreCase("TABLE")) {
+				try (ResultSet pkResultSet = dbMetadata.getPrimaryKeys(catalog, schema, objectName)) {
+					pkStructure = new PrimaryKeyStructure(pkResultSet);
+				}
+			}
+			final String escape = dbMetadata.getSearchStringEscape();
+			final List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+			try (ResultSet columnResultSet = dbMetadata.getColumns(catalog, literal(schema, escape),
+					literal(objectName, escape), null)) {
+				while (columnResultSet.next()) {
+					// Drivers without a search string escape still treat _ and % in the names as wildcards
+					if (matches(schema, columnResultSet.getString("TABLE_SCHEM"))
+							&& matches(objectName, columnResultSet.getString("TABLE_NAME"))) {
+						columns.add(new ColumnMetadata(columnResultSet));
+					}
+				}
+			}
+			final SqlTemplates templates = new SqlTemplates(sd, pkStructure, columns, dialect);
+			return new ObjectMetadata(objectType, objectName, pkStructure, Collections.unmodifiableList(columns),
+					templates);
+		}
+	}
+
+	/**
+	 * Escape the wildcards in a name so that it only matches itself when used as a catalog search pattern.
+	 */
+	static String literal(final String name, final String escape) {
+		if (name == null || escape == null || escape.isEmpty()) {
+			return name;
+		}
+		final StringBuilder pattern = new StringBuilder(name.length() + 8);
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (c == '_' || c == '%' || escape.indexOf(c) >= 0) {
+				pattern.append(escape);
+			}
+			pattern.append(c);
+		}
+		return pattern.toString();
+	}
+
+	private static boolean matches(final String expected, final String actual) {
+		return expected == null || actual == null || expected.equals(actual);
+	}
+
+	boolean isVisible() {
+		return this != NOT_VISIBLE;
+	}
+
+	/**
+	 * Resolve the names given in a request to the names of the columns of this object. A name which does not match a
+	 * column exactly is matched ignoring case.
+	 * @return the column names without duplicates in the order given
+	 * @throws IllegalArgumentException if a name is not a column of this object
+	 */
+	List<String> columns(final List<String> names) {
+		final Set<String> resolved = new LinkedHashSet<String>();
+		for (String name : names) {
+			final String columnName = Arrays.asList(columnNames).contains(name) ? name
+					: columnsByName.get(name.toUpperCase(Locale.ROOT));
+			if (columnName == null) {
+				throw new IllegalArgumentException("Unknown column " + name + " in " + objectName);
+			}
+			resolved.add(columnName);
+		}
+		return List.copyOf(resolved);
+	}
+
+	/**
+	 * The position of a column in {@link #columns}, matching the name exactly and then ignoring case.
+	 * @return the position or -1 if the name is not a column of this object
+	 */
+	int columnIndex(final String name) {
+		Integer index = columnIndexes.get(name);
+		if (index == null) {
+			final String columnName = columnsByName.get(name.toUpperCase(Locale.ROOT));
+			index = (columnName == null) ? null : columnIndexes.get(columnName);
+		}
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * The JDBC type of a column, matching the name as {@link #columnIndex(String)} does.
+	 * @return the type or {@link Types#NULL} if the name is not a column of this object
+	 */
+	int columnType(final String name) {
+		final int index = columnIndex(name);
+		return (index < 0) ? Types.NULL : columns.get(index).dataType;
+	}
+
+	/**
+	 * The names of the columns in ordinal position, for requesting the whole row as generated keys.
+	 */
+	String[] columnNames() {
+		return columnNames.clone();
+	}
+
+	final String objectType;
+	final String objectName;
+	final PrimaryKeyStructure pkStructure;
+	final List<ColumnMetadata> columns;
+	final SqlTemplates templates;
+	private final String[] columnNames;
+	private final Map<String, String> columnsByName = new HashMap<String, String>();
+	private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+}
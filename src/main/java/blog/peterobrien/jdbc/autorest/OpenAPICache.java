@@ -1,26 +1,122 @@
 package blog.peterobrien.jdbc.autorest;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import io.swagger.v3.parser.core.models.SwaggerParseResult;
+import jakarta.inject.Inject;
 import oracle.dbtools.plugin.api.di.annotations.ApplicationScoped;
 import oracle.dbtools.plugin.api.di.annotations.Provides;
+import oracle.dbtools.plugin.api.logging.Log;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Compiled OpenAPI documents by location. A document is loaded on first use and afterwards checked for changes in the
+ * background: requests keep getting the loaded document while a changed file is parsed and compiled, and the new
+ * document replaces it atomically. Requests already in progress finish with the document they started with. Local
+ * files are compared by checksum every {@link #CHECK_SECONDS} seconds, other locations are re-read every
+ * {@link #REMOTE_RELOAD_MINUTES} minutes. A document which fails to load does not replace the loaded one.
+ */
 @ApplicationScoped
 @Provides
 public class OpenAPICache {
 
-    private final LoadingCache<String, OpenAPI> cache;
+    static final long CHECK_SECONDS = 5;
+    static final long REMOTE_RELOAD_MINUTES = 5;
 
-    public OpenAPICache() {
+    private final LoadingCache<String, Loaded> cache;
+    private final Ticker ticker;
+    private final Log log;
+
+    @Inject
+    public OpenAPICache(final Log log) {
+        this(log, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param log reports reloads and documents which fail to load
+     * @param ticker the time source for checking documents for changes
+     * @param executor runs the checks and reloads
+     */
+    OpenAPICache(final Log log, final Ticker ticker, final Executor executor) {
+        this.log = log;
+        this.ticker = ticker;
         this.cache = Caffeine.newBuilder()
+                .ticker(ticker)
+                .executor(executor)
                 .maximumSize(1000) // Maximum number of entries
-                .expireAfterWrite(5, TimeUnit.MINUTES) // Expire entries after 5 minutes
-                .build(this::loadOpenAPI);
+                .refreshAfterWrite(CHECK_SECONDS, TimeUnit.SECONDS) // Check for changes in the background
+                .build(new CacheLoader<String, Loaded>() {
+                    @Override
+                    public Loaded load(String filePath) {
+                        return loadAutoRESTDocument(filePath, checksum(filePath));
+                    }
+
+                    @Override
+                    public Loaded reload(String filePath, Loaded loaded) {
+                        final String checksum = checksum(filePath);
+                        if (checksum == null ? ticker.read() - loaded.loadedAt < TimeUnit.MINUTES.toNanos(REMOTE_RELOAD_MINUTES)
+                                : checksum.equals(loaded.checksum)) {
+                            return loaded;
+                        }
+                        try {
+                            final Loaded reloaded = loadAutoRESTDocument(filePath, checksum);
+                            log.info("Reloaded " + filePath);
+                            return reloaded;
+                        } catch (RuntimeException e) {
+                            log.warning(filePath + " was not reloaded: " + e.getMessage());
+                            return loaded;
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Loads and compiles an OpenAPI document, reporting any invalid x-autorest definitions.
+     *
+     * @param filePath the path to the OpenAPI document
+     * @param checksum the checksum of the file, or null if the location is not a local file
+     * @return the compiled document
+     */
+    private Loaded loadAutoRESTDocument(String filePath, String checksum) {
+        final AutoRESTDocument document = new AutoRESTDocument(loadOpenAPI(filePath));
+        for (String problem : document.problems) {
+            log.warning(filePath + " " + problem);
+        }
+        return new Loaded(document, checksum, ticker.read());
+    }
+
+    /**
+     * The SHA-256 checksum of a local file.
+     *
+     * @return the checksum or null if the location is not a readable local file
+     */
+    static String checksum(String filePath) {
+        try {
+            final Path path = Path.of(filePath);
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path)));
+        } catch (InvalidPathException | IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private record Loaded(AutoRESTDocument document, String checksum, long loadedAt) {
     }
 
     /**
@@ -45,6 +141,16 @@ public class OpenAPICache {
      * @return the cached or newly loaded OpenAPI object
      */
     public OpenAPI getOpenAPIDocument(String filePath) {
-        return cache.get(filePath);
+        return cache.get(filePath).document.openAPI;
+    }
+
+    /**
+     * Retrieves the compiled form of the OpenAPI document from the cache.
+     *
+     * @param filePath the path to the OpenAPI document
+     * @return the cached or newly loaded and compiled document
+     */
+    public AutoRESTDocument getAutoRESTDocument(String filePath) {
+        return cache.get(filePath).document;
     }
 }
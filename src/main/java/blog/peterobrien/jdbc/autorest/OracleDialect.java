@@ -0,0 +1,42 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.List;
+
+/**
+ * Oracle Database 12c and later.
+ */
+public class OracleDialect extends SqlDialect.OffsetFetch {
+	@Override
+	public boolean supports(final String productName, final int majorVersion) {
+		return productName.equals("Oracle");
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	@Override
+	public String upsert(final String qualifiedName, final List<String> keyColumns, final List<String> columns,
+			final List<String> columnTypes) {
+		// Oracle does not allow the columns in the on clause to be updated (ORA-38104), and the row is queried after
+		// the merge, so an existing row is left alone when only key columns are given
+		return SqlDialects.merge(qualifiedName, keyColumns, columns,
+				"(select ? " + String.join(", ? ", columns) + " from dual) s", false);
+	}
+
+	@Override
+	public boolean supportsReturning() {
+		return true;
+	}
+
+	@Override
+	public String rowEstimate() {
+		return "select num_rows from all_tables where owner = ? and table_name = ?";
+	}
+
+	@Override
+	public String toString() {
+		return "Oracle";
+	}
+}
@@ -0,0 +1,67 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PostgreSQL 9.5 and later.
+ */
+public class PostgreSQLDialect extends SqlDialect.LimitOffset {
+	@Override
+	public boolean supports(final String productName, final int majorVersion) {
+		return productName.equals("PostgreSQL");
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	/**
+	 * An insert which updates the row on a primary key conflict. When only key columns are given the key is set to
+	 * itself so that the existing row is still returned.
+	 */
+	@Override
+	public String upsert(final String qualifiedName, final List<String> keyColumns, final List<String> columns,
+			final List<String> columnTypes) {
+		final List<String> assignments = new ArrayList<String>();
+		for (String column : columns) {
+			if (!keyColumns.contains(column)) {
+				assignments.add(column + " = excluded." + column);
+			}
+		}
+		if (assignments.isEmpty()) {
+			assignments.add(keyColumns.get(0) + " = excluded." + keyColumns.get(0));
+		}
+		return "insert into " + qualifiedName + " (" + String.join(", ", columns) + ") values ("
+				+ "?, ".repeat(columns.size() - 1) + "?) on conflict (" + String.join(", ", keyColumns)
+				+ ") do update set " + String.join(", ", assignments) + " returning *";
+	}
+
+	@Override
+	public boolean upsertReturnsRow() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsReturning() {
+		return true;
+	}
+
+	@Override
+	public String insertReturning(final String qualifiedName, final List<String> columns) {
+		return "insert into " + qualifiedName + " (" + String.join(", ", columns) + ") values ("
+				+ "?, ".repeat(columns.size() - 1) + "?) returning *";
+	}
+
+	@Override
+	public String rowEstimate() {
+		return "select c.reltuples::bigint from pg_class c join pg_namespace n on n.oid = c.relnamespace"
+				+ " where n.nspname = ? and c.relname = ?";
+	}
+
+	@Override
+	public String toString() {
+		return "PostgreSQL";
+	}
+}
@@ -12,6 +12,8 @@ public class PrimaryKeyStructure {
 		while (resultSet.next()) {
 			elements.add(new PKElement(resultSet));
 		}
+		// getPrimaryKeys is ordered by COLUMN_NAME rather than the position of the column in the key
+		elements.sort((a, b) -> Short.compare(a.keySequence, b.keySequence));
 	}
 	
 	boolean isKeyColumn(final String key) {
@@ -0,0 +1,181 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A <code>q</code> filter object compiled to a condition with bind variables, in the style of the ORDS AutoREST
+ * filter syntax. For example <code>{"SALARY":{"$gt":1000},"$or":[{"JOB_ID":"IT_PROG"},{"JOB_ID":{"$like":"SA%"}}]}</code>
+ * becomes <code>SALARY &gt; ? and (JOB_ID = ? or JOB_ID like ?)</code>. Fields which are not operators are column
+ * names and are validated against the {@link ObjectMetadata}. Values are never part of the condition so filters with
+ * the same structure produce the same SQL text, which is how {@link SqlTemplates} caches the statements.
+ */
+public class QueryFilter {
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	private QueryFilter(final String condition, final List<Object> values) {
+		this.condition = condition;
+		this.values = values;
+	}
+
+	/**
+	 * @param q the filter object
+	 * @throws IllegalArgumentException if the filter is not valid JSON, uses an unsupported operator or refers to a
+	 * column which the object does not have.
+	 */
+	static QueryFilter compile(final String q, final ObjectMetadata metadata) {
+		final JsonNode filter;
+		try {
+			filter = JSON.readTree(q);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Filter is not valid JSON");
+		}
+		if (filter == null || !filter.isObject()) {
+			throw new IllegalArgumentException("Filter must be a JSON object");
+		}
+		final List<Object> values = new ArrayList<Object>();
+		final String condition = conjunction(filter, metadata, values);
+		return condition.isEmpty() ? null : new QueryFilter(condition, List.copyOf(values));
+	}
+
+	/**
+	 * Every field of a filter object must be true.
+	 */
+	private static String conjunction(final JsonNode filter, final ObjectMetadata metadata, final List<Object> values) {
+		final List<String> conditions = new ArrayList<String>();
+		final Iterator<Map.Entry<String, JsonNode>> fields = filter.fields();
+		while (fields.hasNext()) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			switch (field.getKey()) {
+			case "$and":
+				conditions.add(junction(field.getValue(), " and ", metadata, values));
+				break;
+			case "$or":
+				conditions.add(junction(field.getValue(), " or ", metadata, values));
+				break;
+			default:
+				if (field.getKey().startsWith("$")) {
+					throw new IllegalArgumentException("Unsupported filter operator " + field.getKey());
+				}
+				final String column = metadata.columns(List.of(field.getKey())).get(0);
+				conditions.add(comparisons(column, field.getValue(), values));
+				break;
+			}
+		}
+		return String.join(" and ", conditions);
+	}
+
+	private static String junction(final JsonNode filters, final String operator, final ObjectMetadata metadata,
+			final List<Object> values) {
+		if (!filters.isArray() || filters.size() == 0) {
+			throw new IllegalArgumentException("$and and $or require an array of filter objects");
+		}
+		final List<String> conditions = new ArrayList<String>();
+		for (JsonNode filter : filters) {
+			if (!filter.isObject() || filter.size() == 0) {
+				throw new IllegalArgumentException("$and and $or require an array of filter objects");
+			}
+			conditions.add(conjunction(filter, metadata, values));
+		}
+		return "(" + String.join(operator, conditions) + ")";
+	}
+
+	/**
+	 * A column compared to a value, which is equality, or to an object of operators which must all be true.
+	 */
+	private static String comparisons(final String column, final JsonNode comparison, final List<Object> values) {
+		if (!comparison.isObject()) {
+			return comparison(column, "$eq", comparison, values);
+		}
+		if (comparison.size() == 0) {
+			throw new IllegalArgumentException("No comparison for " + column);
+		}
+		final List<String> conditions = new ArrayList<String>();
+		final Iterator<Map.Entry<String, JsonNode>> operators = comparison.fields();
+		while (operators.hasNext()) {
+			final Map.Entry<String, JsonNode> operator = operators.next();
+			conditions.add(comparison(column, operator.getKey(), operator.getValue(), values));
+		}
+		return (conditions.size() == 1) ? conditions.get(0) : "(" + String.join(" and ", conditions) + ")";
+	}
+
+	private static String comparison(final String column, final String operator, final JsonNode operand,
+			final List<Object> values) {
+		switch (operator) {
+		case "$eq":
+			if (operand.isNull()) {
+				return column + " is null";
+			}
+			return column + " = " + bind(operand, values);
+		case "$ne":
+			if (operand.isNull()) {
+				return column + " is not null";
+			}
+			return column + " <> " + bind(operand, values);
+		case "$gt":
+			return column + " > " + bind(operand, values);
+		case "$gte":
+			return column + " >= " + bind(operand, values);
+		case "$lt":
+			return column + " < " + bind(operand, values);
+		case "$lte":
+			return column + " <= " + bind(operand, values);
+		case "$like":
+			return column + " like " + bind(operand, values);
+		case "$null":
+			return column + " is null";
+		case "$notnull":
+			return column + " is not null";
+		case "$in":
+			if (!operand.isArray() || operand.size() == 0) {
+				throw new IllegalArgumentException("$in requires an array of values for " + column);
+			}
+			final List<String> binds = new ArrayList<String>();
+			for (JsonNode element : operand) {
+				binds.add(bind(element, values));
+			}
+			return column + " in (" + String.join(", ", binds) + ")";
+		default:
+			throw new IllegalArgumentException("Unsupported filter operator " + operator);
+		}
+	}
+
+	private static String bind(final JsonNode operand, final List<Object> values) {
+		if (operand.isTextual()) {
+			values.add(operand.textValue());
+		} else if (operand.isIntegralNumber()) {
+			values.add(operand.canConvertToLong() ? (Object) operand.longValue() : operand.bigIntegerValue());
+		} else if (operand.isNumber()) {
+			values.add(new BigDecimal(operand.asText()));
+		} else if (operand.isBoolean()) {
+			values.add(operand.booleanValue());
+		} else {
+			throw new IllegalArgumentException("Filter values must be strings, numbers or booleans");
+		}
+		return "?";
+	}
+
+	/**
+	 * Bind the filter values starting at the parameter index.
+	 * @return the index of the next parameter
+	 */
+	int bind(final PreparedStatement statement, final int parameterIndex) throws SQLException {
+		int index = parameterIndex;
+		for (Object value : values) {
+			statement.setObject(index++, value);
+		}
+		return index;
+	}
+
+	final String condition;
+	final List<Object> values;
+}
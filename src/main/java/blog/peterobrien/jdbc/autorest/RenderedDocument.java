@@ -0,0 +1,74 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The OpenAPI document serialized for one server URL in one format. The bytes, their gzip compressed form and the
+ * strong entity tags of both are computed once and never modified, so a request for the document only writes bytes.
+ */
+final class RenderedDocument {
+	RenderedDocument(final byte[] body, final String mediaType) {
+		this.body = body;
+		this.gzipped = gzip(body);
+		this.mediaType = mediaType;
+		this.etag = etag(body, "");
+		this.gzippedETag = etag(body, "-gzip");
+	}
+
+	private static byte[] gzip(final byte[] body) {
+		final ByteArrayOutputStream gzipped = new ByteArrayOutputStream(body.length / 4);
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+			out.write(body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return gzipped.toByteArray();
+	}
+
+	/**
+	 * Each content coding is a different representation so it has a different entity tag.
+	 */
+	private static String etag(final byte[] body, final String suffix) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+			return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + suffix + '"';
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Weak comparison, as required for If-None-Match, so that a tag marked weak by a gateway which compressed or
+	 * otherwise transformed the response still matches.
+	 * @param etag the entity tag of the representation being served
+	 * @return true if the If-None-Match header matches the representation
+	 */
+	static boolean matches(final String ifNoneMatch, final String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			final String candidate = tag.trim();
+			if (candidate.equals("*") || opaqueTag(candidate).equals(opaqueTag(etag))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String opaqueTag(final String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+
+	final byte[] body;
+	final byte[] gzipped;
+	final String mediaType;
+	final String etag;
+	final String gzippedETag;
+}
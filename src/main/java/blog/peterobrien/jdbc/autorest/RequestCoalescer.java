@@ -0,0 +1,84 @@
+package blog.peterobrien.jdbc.autorest;
+
+import oracle.dbtools.plugin.api.di.annotations.ApplicationScoped;
+import oracle.dbtools.plugin.api.di.annotations.Provides;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical GET requests which are in flight at the same time. The first request for a key is the leader:
+ * it queries and renders the response. Requests for the same key which arrive before the leader finishes wait for it
+ * and are sent the leader's response. Nothing is kept once the leader finishes, so this is not a cache: a request
+ * which arrives after the leader has finished runs its own query. A follower whose leader does not finish in time,
+ * fails or renders a response too large to share runs its own query.
+ */
+@ApplicationScoped
+@Provides
+public class RequestCoalescer {
+
+    /**
+     * Renders the response for the leader, or returns null if the response was streamed rather than captured.
+     */
+    @FunctionalInterface
+    interface Leader {
+        CapturedResponse render() throws Exception;
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<CapturedResponse>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<CapturedResponse>>();
+    final LongAdder leaders = new LongAdder();
+    final LongAdder followers = new LongAdder();
+
+    /**
+     * Render the response as the leader for the key, or wait for the leader already rendering it.
+     * @param timeoutMillis the longest time a follower waits for the leader
+     * @return the rendered response, or null for a follower if the leader did not finish in time, failed or did not
+     * capture its response, and the request must run on its own
+     * @throws Exception if the leader fails
+     */
+    CapturedResponse execute(final String key, final long timeoutMillis, final Leader leader) throws Exception {
+        final CompletableFuture<CapturedResponse> future = new CompletableFuture<CapturedResponse>();
+        final CompletableFuture<CapturedResponse> leading = inFlight.putIfAbsent(key, future);
+        if (leading != null) {
+            followers.increment();
+            try {
+                return leading.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+        leaders.increment();
+        try {
+            final CapturedResponse response = leader.render();
+            future.complete(response);
+            return response;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the number of keys with a leader rendering the response
+     */
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the fraction of coalesced requests which were sent the response of another request
+     */
+    double ratio() {
+        final long coalesced = followers.sum();
+        final long total = leaders.sum() + coalesced;
+        return (total == 0) ? 0 : (double) coalesced / total;
+    }
+}
@@ -0,0 +1,126 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.lang.ref.Cleaner;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Owns the JDBC statements and result sets created while servicing a request. Result sets are returned to the
+ * servlet for serialization so they can not be closed where they are created. Closing the scope, once the response
+ * has been written, closes everything registered with it in the reverse order of registration.
+ * <p>
+ * A scope which becomes unreachable without being closed is counted as a leak and its resources are closed.
+ * </p>
+ */
+public class ResourceScope implements AutoCloseable {
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/**
+	 * Counters across all scopes. Reported by the metrics route of {@link AutoRESTJDBCServlet}.
+	 */
+	static final LongAdder STATEMENTS_OPENED = new LongAdder();
+	static final LongAdder STATEMENTS_CLOSED = new LongAdder();
+	static final LongAdder RESULT_SETS_OPENED = new LongAdder();
+	static final LongAdder RESULT_SETS_CLOSED = new LongAdder();
+	static final LongAdder LEAKED_SCOPES = new LongAdder();
+
+	private final Resources resources = new Resources();
+	private final Cleaner.Cleanable cleanable = CLEANER.register(this, resources);
+
+	<T extends Statement> T register(final T statement) {
+		STATEMENTS_OPENED.increment();
+		resources.push(statement);
+		return statement;
+	}
+
+	ResultSet register(final ResultSet resultSet) {
+		RESULT_SETS_OPENED.increment();
+		resources.push(resultSet);
+		return resultSet;
+	}
+
+	/**
+	 * @return the number of statements which have been opened and not yet closed by a scope.
+	 */
+	static long openStatements() {
+		return STATEMENTS_OPENED.sum() - STATEMENTS_CLOSED.sum();
+	}
+
+	/**
+	 * @return the number of result sets which have been opened and not yet closed by a scope.
+	 */
+	static long openResultSets() {
+		return RESULT_SETS_OPENED.sum() - RESULT_SETS_CLOSED.sum();
+	}
+
+	/**
+	 * Cancel the statements registered so far, from another thread, when the request has taken too long. The
+	 * statements are still closed by {@link #close()}.
+	 */
+	void cancel() {
+		resources.cancel();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		resources.closed = true;
+		cleanable.clean();
+		if (resources.failure != null) {
+			throw resources.failure;
+		}
+	}
+
+	/**
+	 * State shared with the {@link Cleaner}, which must not refer to the scope itself.
+	 */
+	private static final class Resources implements Runnable {
+		private final Deque<Object> deque = new ArrayDeque<Object>();
+		private volatile boolean closed;
+		private SQLException failure;
+
+		synchronized void push(final Object resource) {
+			deque.push(resource);
+		}
+
+		synchronized void cancel() {
+			for (Object resource : deque) {
+				if (resource instanceof Statement) {
+					try {
+						((Statement) resource).cancel();
+					} catch (SQLException e) {
+						// Already complete or closed
+					}
+				}
+			}
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!closed) {
+				LEAKED_SCOPES.increment();
+			}
+			while (!deque.isEmpty()) {
+				final Object resource = deque.pop();
+				try {
+					if (resource instanceof ResultSet) {
+						RESULT_SETS_CLOSED.increment();
+						((ResultSet) resource).close();
+					} else {
+						STATEMENTS_CLOSED.increment();
+						((Statement) resource).close();
+					}
+				} catch (SQLException e) {
+					if (failure == null) {
+						failure = e;
+					} else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+		}
+	}
+}
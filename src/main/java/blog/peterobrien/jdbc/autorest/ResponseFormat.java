@@ -0,0 +1,38 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.Locale;
+
+/**
+ * The representations of a collection which can be requested with the Accept header. Formats other than JSON write
+ * rows without an envelope, so a request without paging parameters exports every row.
+ */
+enum ResponseFormat {
+	JSON("application/json"),
+	NDJSON("application/x-ndjson"),
+	CSV("text/csv");
+
+	ResponseFormat(final String mediaType) {
+		this.mediaType = mediaType;
+	}
+
+	/**
+	 * The first format named in the Accept header, or JSON if none is.
+	 */
+	static ResponseFormat of(final String accept) {
+		if (accept != null) {
+			for (String mediaRange : accept.split(",")) {
+				final int separator = mediaRange.indexOf(';');
+				final String mediaType = ((separator < 0) ? mediaRange : mediaRange.substring(0, separator)).trim()
+						.toLowerCase(Locale.ROOT);
+				for (ResponseFormat format : values()) {
+					if (format.mediaType.equals(mediaType)) {
+						return format;
+					}
+				}
+			}
+		}
+		return JSON;
+	}
+
+	final String mediaType;
+}
@@ -0,0 +1,145 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+
+/**
+ * A path from the OpenAPI document with the names and types of its path parameters resolved once, in the order in
+ * which they appear in the path template.
+ */
+public class Route {
+	Route(final String path, final PathItem pathItem, final String[] parameterNames, final List<String> problems) {
+		this.path = path;
+		this.pathItem = pathItem;
+		this.parameterNames = parameterNames;
+		this.parameterTypes = new String[parameterNames.length];
+		this.services = new ServiceDefinition[SupportedAction.values().length];
+
+		final Map<String, Parameter> pathParameters = new HashMap<String, Parameter>();
+		if (pathItem.getParameters() != null) {
+			for (Parameter param: pathItem.getParameters()) {
+				if ("path".equalsIgnoreCase(param.getIn())) {
+					pathParameters.put(param.getName(), param);
+				}
+			}
+		}
+		for (int i = 0; i < parameterNames.length; i++) {
+			final Parameter param = pathParameters.get(parameterNames[i]);
+			final Schema<?> schema = (param == null) ? null : param.getSchema();
+			if (schema == null || schema.getType() == null) {
+				this.parameterTypes[i] = "string";
+			} else if ("integer".equals(schema.getType()) && "int64".equals(schema.getFormat())) {
+				this.parameterTypes[i] = "int64";
+			} else {
+				this.parameterTypes[i] = schema.getType();
+			}
+		}
+
+		for (SupportedAction action: SupportedAction.values()) {
+			final Operation operation = operation(pathItem, action);
+			if (operation == null) {
+				continue;
+			}
+			// Check for an operation specific x-autorest definition. If there is not one then check at the path
+			Object extension = null;
+			if (operation.getExtensions() != null && operation.getExtensions().containsKey("x-autorest")) {
+				extension = operation.getExtensions().get("x-autorest");
+			} else if (pathItem.getExtensions() != null && pathItem.getExtensions().containsKey("x-autorest")) {
+				extension = pathItem.getExtensions().get("x-autorest");
+			}
+			if (extension == null) {
+				continue;
+			}
+			// For a GET operation the query may be for a collection of resource items or a single resource item.
+			SupportedQueryType queryType = null;
+			if (action == SupportedAction.GET) {
+				queryType = (parameterNames.length == 0) ? SupportedQueryType.COLLECTION : SupportedQueryType.ITEM;
+			}
+			try {
+				this.services[action.ordinal()] = ServiceDefinition.parse(path, extension, queryType);
+			} catch (IllegalArgumentException e) {
+				problems.add(action + " " + path + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private static Operation operation(final PathItem pathItem, final SupportedAction action) {
+		switch (action) {
+		case DELETE:
+			return pathItem.getDelete();
+		case GET:
+			return pathItem.getGet();
+		case POST:
+			return pathItem.getPost();
+		case PUT:
+			return pathItem.getPut();
+		}
+		return null;
+	}
+
+	/**
+	 * The service definition for an HTTP method on this route.
+	 * @return the definition or null if the method is not supported or does not have a valid x-autorest definition.
+	 */
+	ServiceDefinition service(final String method) {
+		switch (method) {
+		case "DELETE":
+			return services[SupportedAction.DELETE.ordinal()];
+		case "GET":
+			return services[SupportedAction.GET.ordinal()];
+		case "POST":
+			return services[SupportedAction.POST.ordinal()];
+		case "PUT":
+			return services[SupportedAction.PUT.ordinal()];
+		}
+		return null;
+	}
+
+	/**
+	 * The valid service definitions of this route, for each supported HTTP method.
+	 */
+	List<ServiceDefinition> services() {
+		final List<ServiceDefinition> defined = new ArrayList<ServiceDefinition>();
+		for (ServiceDefinition sd : services) {
+			if (sd != null) {
+				defined.add(sd);
+			}
+		}
+		return defined;
+	}
+
+	/**
+	 * Convert the raw path segments captured for this route to the types declared for the path parameters.
+	 * @return the typed values or null if a segment is not valid for the parameter type.
+	 */
+	Object[] convert(final String[] segments) {
+		final Object[] values = new Object[parameterNames.length];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				switch (parameterTypes[i]) {
+				case "integer": values[i] = Integer.valueOf(segments[i]); break;
+				case "int64": values[i] = Long.valueOf(segments[i]); break;
+				case "number": values[i] = new BigDecimal(segments[i]); break;
+				default: values[i] = segments[i]; break;
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return values;
+	}
+
+	final String path;
+	final PathItem pathItem;
+	final String[] parameterNames;
+	final String[] parameterTypes;
+	private final ServiceDefinition[] services;
+}
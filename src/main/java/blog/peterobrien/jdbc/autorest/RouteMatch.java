@@ -0,0 +1,27 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.Map;
+
+/**
+ * The result of matching a request path against the {@link RouteMatcher}: the matched route and the typed values of
+ * its path parameters.
+ */
+public class RouteMatch {
+	RouteMatch(final Route route, final Object[] values) {
+		this.route = route;
+		this.values = values;
+	}
+
+	boolean hasParameters() {
+		return values.length > 0;
+	}
+
+	void putParameters(final Map<String, Object> paramMap) {
+		for (int i = 0; i < values.length; i++) {
+			paramMap.put(route.parameterNames[i], values[i]);
+		}
+	}
+
+	final Route route;
+	final Object[] values;
+}
@@ -0,0 +1,128 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.PathItem;
+
+/**
+ * Segment trie of the paths in an OpenAPI document. Built once when the document is loaded so that routing a request
+ * does not depend on the number of paths in the document. Literal segments take precedence over path parameters, so
+ * <code>/employees/manager</code> is matched before <code>/employees/{id}</code>. Empty segments are ignored which
+ * means a trailing slash is not significant unless the path is defined exactly.
+ */
+public class RouteMatcher {
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private final Map<String, Route> exact = new HashMap<String, Route>();
+	private final Node root = new Node();
+	private final List<Route> routes = new ArrayList<Route>();
+	private int maxParameters;
+
+	/**
+	 * Compile the paths of the OpenAPI document.
+	 * @param problems receives a description of every invalid x-autorest definition found.
+	 */
+	RouteMatcher(final OpenAPI openAPI, final List<String> problems) {
+		if (openAPI.getPaths() == null) {
+			return;
+		}
+		for (Map.Entry<String, PathItem> entry: openAPI.getPaths().entrySet()) {
+			add(entry.getKey(), entry.getValue(), problems);
+		}
+	}
+
+	private void add(final String path, final PathItem pathItem, final List<String> problems) {
+		final List<String> parameterNames = new ArrayList<String>();
+		Node node = root;
+		for (String segment: path.split("/")) {
+			if (segment.isEmpty()) {
+				continue;
+			}
+			if (segment.length() > 2 && segment.startsWith("{") && segment.endsWith("}")) {
+				parameterNames.add(segment.substring(1, segment.length() - 1));
+				if (node.parameter == null) {
+					node.parameter = new Node();
+				}
+				node = node.parameter;
+			} else {
+				node = node.literals.computeIfAbsent(segment, k -> new Node());
+			}
+		}
+		final Route route = new Route(path, pathItem, parameterNames.toArray(new String[0]), problems);
+		routes.add(route);
+		if (parameterNames.isEmpty()) {
+			exact.put(path, route);
+		}
+		// The first definition of an equivalent template wins
+		if (node.route == null) {
+			node.route = route;
+		}
+		maxParameters = Math.max(maxParameters, parameterNames.size());
+	}
+
+	/**
+	 * Every route in the order of the paths in the document.
+	 */
+	List<Route> routes() {
+		return Collections.unmodifiableList(routes);
+	}
+
+	/**
+	 * Find the route for a request path, relative to the AutoREST prefix.
+	 * @return the matching route and path parameter values, or null if no route matches.
+	 */
+	RouteMatch match(final String path) {
+		final Route exactRoute = exact.get(path);
+		if (exactRoute != null) {
+			return new RouteMatch(exactRoute, NO_VALUES);
+		}
+		final String[] segments = new String[maxParameters];
+		final Route route = match(root, path, 0, segments, 0);
+		if (route == null) {
+			return null;
+		}
+		if (route.parameterNames.length == 0) {
+			return new RouteMatch(route, NO_VALUES);
+		}
+		final Object[] values = route.convert(segments);
+		return (values == null) ? null : new RouteMatch(route, values);
+	}
+
+	private static Route match(final Node node, final String path, int start, final String[] segments, final int count) {
+		final int length = path.length();
+		while (start < length && path.charAt(start) == '/') {
+			start++;
+		}
+		if (start >= length) {
+			return node.route;
+		}
+		int end = path.indexOf('/', start);
+		if (end < 0) {
+			end = length;
+		}
+		final String segment = path.substring(start, end);
+		final Node literal = node.literals.get(segment);
+		if (literal != null) {
+			final Route route = match(literal, path, end, segments, count);
+			if (route != null) {
+				return route;
+			}
+		}
+		if (node.parameter != null && count < segments.length) {
+			segments[count] = segment;
+			return match(node.parameter, path, end, segments, count + 1);
+		}
+		return null;
+	}
+
+	private static final class Node {
+		final Map<String, Node> literals = new HashMap<String, Node>(4);
+		Node parameter;
+		Route route;
+	}
+}
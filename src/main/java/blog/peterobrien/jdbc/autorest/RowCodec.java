@@ -0,0 +1,69 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * How to write the rows of a result set with a particular shape: the JSON field name, encoded once, and the
+ * {@link ColumnCodec} of each column. The plan for the queries of each resource and <code>fields</code> projection is
+ * kept with its {@link SqlTemplates.Select} so that their result sets share one plan.
+ */
+final class RowCodec {
+	/**
+	 * Appended to an item URL, followed by the column name, for the content of a LOB column.
+	 */
+	static final String LOB_PATH = "/_lob/";
+
+	private final SerializedString[] names;
+	private final ColumnCodec[] codecs;
+
+	private RowCodec(final ResultSetMetaData metaData) throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		this.names = new SerializedString[columnCount];
+		this.codecs = new ColumnCodec[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			names[i] = new SerializedString(metaData.getColumnLabel(i + 1));
+			codecs[i] = ColumnCodec.of(metaData, i + 1);
+		}
+	}
+
+	/**
+	 * The plan for the columns of the result set.
+	 */
+	static RowCodec of(final ResultSetMetaData metaData) throws SQLException {
+		return new RowCodec(metaData);
+	}
+
+	/**
+	 * Write each column of the current row as a field of the enclosing JSON object.
+	 */
+	void write(final ResultSet resultSet, final JsonGenerator generator) throws SQLException, IOException {
+		write(resultSet, generator, null);
+	}
+
+	/**
+	 * Write each column of the current row as a field of the enclosing JSON object, with each LOB written as
+	 * <code>{"href":"itemURL/_lob/column"}</code> rather than its content when the item URL is not null.
+	 */
+	void write(final ResultSet resultSet, final JsonGenerator generator, final String itemURL)
+			throws SQLException, IOException {
+		for (int i = 0; i < names.length; i++) {
+			generator.writeFieldName(names[i]);
+			if (itemURL != null && codecs[i].isLob()) {
+				generator.writeStartObject();
+				generator.writeStringField("href", itemURL + LOB_PATH
+						+ URLEncoder.encode(names[i].getValue(), StandardCharsets.UTF_8).replace("+", "%20"));
+				generator.writeEndObject();
+			} else {
+				codecs[i].write(resultSet, i + 1, generator);
+			}
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Source of rows for a bulk insert, read incrementally from the request body.
+ */
+@FunctionalInterface
+public interface RowReader {
+	/**
+	 * @return the next row or null when there are no more rows
+	 */
+	Map<String, Object> next() throws IOException;
+}
@@ -0,0 +1,61 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.util.List;
+
+/**
+ * Microsoft SQL Server 2012 and later.
+ */
+public class SQLServerDialect extends SqlDialect.OffsetFetch {
+	@Override
+	public boolean supports(final String productName, final int majorVersion) {
+		return productName.equals("Microsoft SQL Server");
+	}
+
+	@Override
+	public String quote(final String identifier) {
+		return '[' + identifier.replace("]", "]]") + ']';
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	/**
+	 * A merge which outputs the inserted or updated row. SQL Server requires a merge to be terminated by a semicolon.
+	 */
+	@Override
+	public String upsert(final String qualifiedName, final List<String> keyColumns, final List<String> columns,
+			final List<String> columnTypes) {
+		// Without holdlock two merges for the same missing key can both insert it
+		return SqlDialects.merge(qualifiedName + " with (holdlock)", keyColumns, columns,
+				SqlDialects.valuesSource(columns)) + " output inserted.*;";
+	}
+
+	@Override
+	public boolean upsertReturnsRow() {
+		return true;
+	}
+
+	@Override
+	public boolean supportsReturning() {
+		return true;
+	}
+
+	@Override
+	public String insertReturning(final String qualifiedName, final List<String> columns) {
+		return "insert into " + qualifiedName + " (" + String.join(", ", columns) + ") output inserted.* values ("
+				+ "?, ".repeat(columns.size() - 1) + "?)";
+	}
+
+	@Override
+	public String rowEstimate() {
+		return "select sum(p.rows) from sys.partitions p join sys.tables t on t.object_id = p.object_id"
+				+ " join sys.schemas s on s.schema_id = t.schema_id where s.name = ? and t.name = ? and p.index_id in (0, 1)";
+	}
+
+	@Override
+	public String toString() {
+		return "SQL Server";
+	}
+}
@@ -1,9 +1,47 @@
 package blog.peterobrien.jdbc.autorest;
 
+import java.util.Map;
+
+/**
+ * Immutable description of the database object, and the type of query, for an operation in the OpenAPI document.
+ * These are built once when the document is loaded, from the <code>x-autorest</code> extension of the operation or
+ * of its path.
+ */
 public class ServiceDefinition {
-String path;
-String identifier;
-String owner;
-SupportedObjectType type;
-SupportedQueryType queryType;
+	public ServiceDefinition(final String path, final String owner, final String identifier,
+			final SupportedObjectType type, final SupportedQueryType queryType) {
+		this.path = path;
+		this.owner = owner;
+		this.identifier = identifier;
+		this.type = type;
+		this.queryType = queryType;
+	}
+
+	/**
+	 * Create the service definition from an <code>x-autorest</code> extension.
+	 * @throws IllegalArgumentException if the extension is not a valid x-autorest definition.
+	 */
+	static ServiceDefinition parse(final String path, final Object extension, final SupportedQueryType queryType) {
+		if (!(extension instanceof Map)) {
+			throw new IllegalArgumentException("x-autorest must be an object with 'identifier' and 'type' attributes");
+		}
+		final Map<?, ?> serviceDefinition = (Map<?, ?>) extension;
+		final Object identifier = serviceDefinition.get("identifier");
+		if (identifier == null || identifier.toString().isBlank()) {
+			throw new IllegalArgumentException("x-autorest missing 'identifier' attribute");
+		}
+		final Object type = serviceDefinition.get("type");
+		if (type == null) {
+			throw new IllegalArgumentException("x-autorest missing 'type' attribute");
+		}
+		final Object owner = serviceDefinition.get("owner");
+		return new ServiceDefinition(path, (owner == null) ? null : owner.toString(), identifier.toString(),
+				SupportedObjectType.of(type.toString()), queryType);
+	}
+
+	final String path;
+	final String identifier;
+	final String owner;
+	final SupportedObjectType type;
+	final SupportedQueryType queryType;
 }
@@ -0,0 +1,137 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The SQL syntax and capabilities of a database product. A dialect is chosen once per pool by
+ * {@link SqlDialects#detect(java.sql.DatabaseMetaData)} so that servicing a request never inspects driver or product
+ * names. Additional dialects can be provided through {@link java.util.ServiceLoader} and take precedence over the
+ * dialects included with this plugin.
+ */
+public interface SqlDialect {
+
+	/**
+	 * @param productName the value of {@link java.sql.DatabaseMetaData#getDatabaseProductName()}
+	 * @param majorVersion the value of {@link java.sql.DatabaseMetaData#getDatabaseMajorVersion()}
+	 * @return true if this dialect can be used for the database
+	 */
+	boolean supports(String productName, int majorVersion);
+
+	/**
+	 * Add the clause which restricts the query to a page of rows. The limit and offset are bind variables.
+	 */
+	String paginate(String query);
+
+	/**
+	 * Bind the limit and offset for a query returned by {@link #paginate(String)}.
+	 * @param parameterIndex the index of the first pagination bind variable
+	 */
+	void bindPagination(PreparedStatement statement, int parameterIndex, int limit, int offset) throws SQLException;
+
+	/**
+	 * Quote an identifier so that it is used exactly as given. Statement text is built from the names in the OpenAPI
+	 * document and the data dictionary as they are, so this is for dialects and callers which need an exact name.
+	 */
+	default String quote(final String identifier) {
+		return '"' + identifier.replace("\"", "\"\"") + '"';
+	}
+
+	/**
+	 * @return true if the database can insert or update a row in a single statement
+	 */
+	boolean supportsUpsert();
+
+	/**
+	 * The statement which inserts a row or, when a row with the same key exists, updates it. The columns, which
+	 * include the key columns, are bound in the order given. Only used when {@link #supportsUpsert()} is true. The
+	 * default is the SQL standard <code>merge</code>.
+	 * @param columnTypes the declared type of each column, for example <code>VARCHAR(20)</code>, for databases which
+	 * need the type of a bind variable
+	 */
+	default String upsert(final String qualifiedName, final List<String> keyColumns, final List<String> columns,
+			final List<String> columnTypes) {
+		return SqlDialects.merge(qualifiedName, keyColumns, columns, SqlDialects.valuesSource(columns));
+	}
+
+	/**
+	 * @return true if the statement returned by {@link #upsert(String, List, List, List)} is a query for the inserted or
+	 * updated row
+	 */
+	default boolean upsertReturnsRow() {
+		return false;
+	}
+
+	/**
+	 * @return true if a data manipulation statement can return the affected row in the same round trip
+	 */
+	boolean supportsReturning();
+
+	/**
+	 * The insert statement for the columns as a query for the inserted row. When {@link #supportsReturning()} is true
+	 * and this is null the row is requested as generated keys naming every column of the table.
+	 */
+	default String insertReturning(final String qualifiedName, final List<String> columns) {
+		return null;
+	}
+
+	/**
+	 * @return true if the response to an insert, when {@link #supportsReturning()} is false, is built from the bound
+	 * values and the generated keys rather than selected after the insert
+	 */
+	default boolean insertedRowFromValues() {
+		return false;
+	}
+
+	/**
+	 * A query for the number of rows in a table according to the optimizer statistics, with the owner and table name
+	 * as bind variables, or null if the dialect does not have one. The query returns no rows or a null or negative
+	 * value when there are no statistics.
+	 */
+	default String rowEstimate() {
+		return null;
+	}
+
+	/**
+	 * The fetch size for a forward only cursor over every row of a table.
+	 * @param fetchSize the configured number of rows for each fetch
+	 */
+	default int exportFetchSize(final int fetchSize) {
+		return fetchSize;
+	}
+
+	/**
+	 * Dialect using <code>offset ? rows fetch next ? rows only</code>, where the offset is bound before the limit.
+	 */
+	abstract class OffsetFetch implements SqlDialect {
+		@Override
+		public String paginate(final String query) {
+			return query + " offset ? rows fetch next ? rows only";
+		}
+
+		@Override
+		public void bindPagination(final PreparedStatement statement, final int parameterIndex, final int limit,
+				final int offset) throws SQLException {
+			statement.setInt(parameterIndex, offset);
+			statement.setInt(parameterIndex + 1, limit);
+		}
+	}
+
+	/**
+	 * Dialect using <code>limit ? offset ?</code>, where the limit is bound before the offset.
+	 */
+	abstract class LimitOffset implements SqlDialect {
+		@Override
+		public String paginate(final String query) {
+			return query + " limit ? offset ?";
+		}
+
+		@Override
+		public void bindPagination(final PreparedStatement statement, final int parameterIndex, final int limit,
+				final int offset) throws SQLException {
+			statement.setInt(parameterIndex, limit);
+			statement.setInt(parameterIndex + 1, offset);
+		}
+	}
+}
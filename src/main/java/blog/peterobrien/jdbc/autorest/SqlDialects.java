@@ -0,0 +1,109 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link SqlDialect} implementations for DB2, MySQL, Oracle, PostgreSQL and SQL Server, and the detection of
+ * the dialect to use for a database.
+ */
+public final class SqlDialects {
+	private SqlDialects() {
+	}
+
+	/**
+	 * Choose the dialect from the database product name and version. Dialects registered with
+	 * {@link ServiceLoader} are considered first.
+	 */
+	static SqlDialect detect(final DatabaseMetaData dbMetadata) throws SQLException {
+		final String productName = dbMetadata.getDatabaseProductName();
+		final int majorVersion = dbMetadata.getDatabaseMajorVersion();
+		final List<SqlDialect> candidates = new ArrayList<SqlDialect>();
+		ServiceLoader.load(SqlDialect.class, SqlDialect.class.getClassLoader()).forEach(candidates::add);
+		candidates.addAll(List.of(ORACLE, SQL_SERVER, POSTGRESQL, MYSQL, DB2));
+		for (SqlDialect dialect : candidates) {
+			if (productName != null && dialect.supports(productName, majorVersion)) {
+				return dialect;
+			}
+		}
+		return STANDARD;
+	}
+
+	/**
+	 * A <code>merge</code> statement for {@link SqlDialect#upsert(String, List, List, List)}. The source is the row of
+	 * bind variables aliased as <code>s</code>, which is matched to the target <code>t</code> on the key columns. When
+	 * only key columns are given the key is set to itself, so that a statement which outputs the row does so for an
+	 * existing row.
+	 * @param target the table, followed by any table hints
+	 */
+	static String merge(final String target, final List<String> keyColumns, final List<String> columns,
+			final String source) {
+		return merge(target, keyColumns, columns, source, true);
+	}
+
+	/**
+	 * @param updateKey false if the database does not allow the key columns to be updated, in which case an existing
+	 * row is left alone when only key columns are given
+	 */
+	static String merge(final String target, final List<String> keyColumns, final List<String> columns,
+			final String source, final boolean updateKey) {
+		final StringBuilder merge = new StringBuilder("merge into ");
+		merge.append(target).append(" t using ").append(source).append(" on (");
+		for (int i = 0; i < keyColumns.size(); i++) {
+			if (i > 0) {
+				merge.append(" and ");
+			}
+			merge.append("t.").append(keyColumns.get(i)).append(" = s.").append(keyColumns.get(i));
+		}
+		merge.append(")");
+		String separator = " when matched then update set ";
+		for (String column : columns) {
+			if (!keyColumns.contains(column)) {
+				merge.append(separator).append("t.").append(column).append(" = s.").append(column);
+				separator = ", ";
+			}
+		}
+		if (updateKey && separator.startsWith(" when")) {
+			merge.append(separator).append("t.").append(keyColumns.get(0)).append(" = s.").append(keyColumns.get(0));
+		}
+		merge.append(" when not matched then insert (").append(String.join(", ", columns)).append(") values (s.");
+		merge.append(String.join(", s.", columns)).append(")");
+		return merge.toString();
+	}
+
+	/**
+	 * The columns as a row of bind variables, for example <code>(values (?, ?)) s (a, b)</code>.
+	 */
+	static String valuesSource(final List<String> columns) {
+		return "(values (" + "?, ".repeat(columns.size() - 1) + "?)) s (" + String.join(", ", columns) + ")";
+	}
+
+	/**
+	 * The columns as a row of bind variables cast to the column types, for example
+	 * <code>(values (cast(? as INTEGER), cast(? as VARCHAR(20)))) s (a, b)</code>, for databases which do not infer
+	 * the type of an untyped bind variable.
+	 */
+	static String typedValuesSource(final List<String> columns, final List<String> columnTypes) {
+		final StringBuilder source = new StringBuilder("(values (");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				source.append(", ");
+			}
+			source.append("cast(? as ").append(columnTypes.get(i)).append(")");
+		}
+		return source.append(")) s (").append(String.join(", ", columns)).append(")").toString();
+	}
+
+	static final SqlDialect ORACLE = new OracleDialect();
+	static final SqlDialect SQL_SERVER = new SQLServerDialect();
+	static final SqlDialect POSTGRESQL = new PostgreSQLDialect();
+	static final SqlDialect MYSQL = new MySQLDialect();
+	static final SqlDialect DB2 = new DB2Dialect();
+	/**
+	 * Used when the database product is not recognised.
+	 */
+	static final SqlDialect STANDARD = new StandardDialect();
+}
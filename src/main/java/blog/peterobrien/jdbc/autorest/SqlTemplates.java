@@ -0,0 +1,226 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * SQL statement text for a database object, built once and held with its {@link ObjectMetadata}. All values,
+ * including the limit and offset for pagination, are bind variables so that the database sees the same statement
+ * text for every request.
+ */
+public class SqlTemplates {
+	SqlTemplates(final ServiceDefinition sd, final PrimaryKeyStructure pkStructure, final List<ColumnMetadata> columns,
+			final SqlDialect dialect) {
+		this.dialect = dialect;
+		for (ColumnMetadata column : columns) {
+			this.columnTypes.put(column.columnName, column.declaredType());
+		}
+		this.qualifiedName = (sd.owner == null) ? sd.identifier : sd.owner + "." + sd.identifier;
+		this.keyCondition = (pkStructure == null) ? null : keyCondition(pkStructure);
+		final List<String> keys = new ArrayList<String>();
+		if (pkStructure != null) {
+			for (PKElement pk: pkStructure.elements) {
+				keys.add(pk.columnName);
+			}
+		}
+		this.keyColumns = List.copyOf(keys);
+
+		final StringBuilder orderBy = new StringBuilder();
+		if (pkStructure != null && !pkStructure.elements.isEmpty()) {
+			orderBy.append(" order by ");
+			for (PKElement pk: pkStructure.elements) {
+				orderBy.append(pk.columnName);
+				orderBy.append(",");
+			}
+			orderBy.deleteCharAt(orderBy.length() -1);
+		}
+		this.orderBy = orderBy.toString();
+		this.seekCondition = (pkStructure == null || pkStructure.elements.isEmpty()) ? null : seekCondition(pkStructure);
+
+		this.all = new Select("*", null);
+		this.selectCollection = all.collection;
+		this.selectCollectionAfter = all.collectionAfter;
+		this.selectItem = all.item;
+		this.delete = (keyCondition == null) ? null : "delete from " + qualifiedName + " where " + keyCondition;
+	}
+
+	/**
+	 * The queries for a select list and, for the collection queries, an optional filter condition whose bind
+	 * variables precede the others. Each statement is null if the object does not have the primary key it needs.
+	 */
+	final class Select {
+		private Select(final String selectList, final String filter) {
+			final String select = "select " + selectList + " from " + qualifiedName;
+			final String where = (filter == null) ? " where " : " where (" + filter + ") and ";
+			this.export = (filter == null) ? select : select + " where (" + filter + ")";
+			this.count = "select count(*) from " + qualifiedName + ((filter == null) ? "" : " where (" + filter + ")");
+			this.collection = dialect.paginate(export + orderBy);
+			this.collectionAfter = (seekCondition == null) ? null
+					: dialect.paginate(select + where + seekCondition + orderBy);
+			this.item = (keyCondition == null) ? null : select + " where " + keyCondition;
+		}
+
+		final String collection;
+		final String collectionAfter;
+		/**
+		 * Every row, in no particular order so that the database does not have to sort the table.
+		 */
+		final String export;
+		/**
+		 * The number of rows in the collection, which does not depend on the select list.
+		 */
+		final String count;
+		final String item;
+
+		private volatile RowCodec rowCodec;
+
+		/**
+		 * The plan for writing the rows of these queries, which all have the same columns. It is made from the first
+		 * result set and kept, like the queries, until the {@link ObjectMetadata} is evicted.
+		 */
+		RowCodec rowCodec(final ResultSetMetaData metaData) throws SQLException {
+			RowCodec codec = rowCodec;
+			if (codec == null) {
+				codec = RowCodec.of(metaData);
+				rowCodec = codec;
+			}
+			return codec;
+		}
+	}
+
+	/**
+	 * The queries which select the columns, in the order given, or every column if columns is null. The columns must
+	 * have been validated against the {@link ObjectMetadata} because they become part of the statement text.
+	 */
+	Select select(final List<String> columns) {
+		if (columns == null) {
+			return all;
+		}
+		return selects.get(columns, k -> new Select(String.join(", ", k), null));
+	}
+
+	/**
+	 * The queries which select the columns, or every column if columns is null, of the rows matching a
+	 * {@link QueryFilter} condition. Cached by the condition, which only depends on the structure of the filter.
+	 */
+	Select select(final List<String> columns, final String filter) {
+		if (filter == null) {
+			return select(columns);
+		}
+		return filteredSelects.get(new FilteredSelect(columns, filter),
+				k -> new Select((columns == null) ? "*" : String.join(", ", columns), filter));
+	}
+
+	private record FilteredSelect(List<String> columns, String filter) {
+	}
+
+	/**
+	 * Condition for the rows which follow a primary key value in key order. Expressed without row value comparison,
+	 * which not all databases support, so <code>(a, b) &gt; (?, ?)</code> is written as
+	 * <code>(a &gt; ? or (a = ? and b &gt; ?))</code>.
+	 */
+	private static String seekCondition(final PrimaryKeyStructure pkStructure) {
+		final StringBuilder condition = new StringBuilder("(");
+		for (int i = 0; i < pkStructure.elements.size(); i++) {
+			if (i > 0) {
+				condition.append(" or (");
+			}
+			for (int j = 0; j < i; j++) {
+				condition.append(pkStructure.elements.get(j).columnName);
+				condition.append(" = ? and ");
+			}
+			condition.append(pkStructure.elements.get(i).columnName);
+			condition.append(" > ?");
+			if (i > 0) {
+				condition.append(")");
+			}
+		}
+		condition.append(")");
+		return condition.toString();
+	}
+
+	private static String keyCondition(final PrimaryKeyStructure pkStructure) {
+		final StringBuilder condition = new StringBuilder();
+		for (PKElement pk: pkStructure.elements) {
+			if (condition.length() > 0) {
+				condition.append(" and ");
+			}
+			condition.append(pk.columnName);
+			condition.append(" = ?");
+		}
+		return condition.toString();
+	}
+
+	/**
+	 * The insert statement for the columns, in the order they are to be bound.
+	 */
+	String insert(final List<String> columns) {
+		return inserts.get(columns, k -> "insert into " + qualifiedName + " (" + String.join(", ", k) + ") values ("
+				+ "?,".repeat(k.size() - 1) + "?)");
+	}
+
+	/**
+	 * The update statement which sets the columns, in the order they are to be bound, followed by the primary key
+	 * columns.
+	 */
+	String update(final List<String> columns) {
+		return updates.get(columns, k -> "update " + qualifiedName + " set " + String.join(" = ?, ", k) + " = ? where "
+				+ keyCondition);
+	}
+
+	/**
+	 * The insert or update statement for the columns, which include the key columns, in the order they are to be
+	 * bound. Only available when the dialect supports upsert.
+	 */
+	String upsert(final List<String> columns) {
+		return upserts.get(columns, k -> {
+			final List<String> types = new ArrayList<String>(k.size());
+			for (String column : k) {
+				types.add(columnTypes.get(column));
+			}
+			return dialect.upsert(qualifiedName, keyColumns, k, types);
+		});
+	}
+
+	/**
+	 * The insert statement for the columns as a query for the inserted row, or null if the dialect does not provide
+	 * one.
+	 */
+	String insertReturning(final List<String> columns) {
+		return insertsReturning.get(columns, k -> dialect.insertReturning(qualifiedName, k));
+	}
+
+	final SqlDialect dialect;
+	final List<String> keyColumns;
+	private final Map<String, String> columnTypes = new HashMap<String, String>();
+	private final String orderBy;
+	private final String seekCondition;
+	private final Select all;
+	final String qualifiedName;
+	final String keyCondition;
+	final String selectCollection;
+	/**
+	 * Page of the collection following a primary key value. Null if the object does not have a primary key.
+	 */
+	final String selectCollectionAfter;
+	final String selectItem;
+	final String delete;
+	/**
+	 * Projections, insert, update and upsert statements are cached by the list of columns provided in the request.
+	 */
+	private final Cache<List<String>, Select> selects = Caffeine.newBuilder().maximumSize(COLUMN_SET_CACHE_SIZE).build();
+	private final Cache<FilteredSelect, Select> filteredSelects = Caffeine.newBuilder().maximumSize(FILTER_CACHE_SIZE).build();
+	private final Cache<List<String>, String> inserts = Caffeine.newBuilder().maximumSize(COLUMN_SET_CACHE_SIZE).build();
+	private final Cache<List<String>, String> updates = Caffeine.newBuilder().maximumSize(COLUMN_SET_CACHE_SIZE).build();
+	private final Cache<List<String>, String> insertsReturning = Caffeine.newBuilder().maximumSize(COLUMN_SET_CACHE_SIZE).build();
+	private final Cache<List<String>, String> upserts = Caffeine.newBuilder().maximumSize(COLUMN_SET_CACHE_SIZE).build();
+	static final int COLUMN_SET_CACHE_SIZE = 32;
+	static final int FILTER_CACHE_SIZE = 256;
+}
@@ -0,0 +1,26 @@
+package blog.peterobrien.jdbc.autorest;
+
+/**
+ * Dialect used when the database product is not recognised.
+ */
+public class StandardDialect extends SqlDialect.LimitOffset {
+	@Override
+	public boolean supports(final String productName, final int majorVersion) {
+		return true;
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return false;
+	}
+
+	@Override
+	public boolean supportsReturning() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "Standard";
+	}
+}
@@ -4,6 +4,19 @@ public enum SupportedObjectType {
 	    TABLE,
 	    VIEW;
 
+	    /**
+	     * Case insensitive lookup of the x-autorest type attribute.
+	     * @throws IllegalArgumentException if the type is not supported.
+	     */
+	    public static SupportedObjectType of(final String type) {
+	        for (SupportedObjectType value : values()) {
+	            if (value.name().equalsIgnoreCase(type)) {
+	                return value;
+	            }
+	        }
+	        throw new IllegalArgumentException("x-autorest 'type' must be one of table or view but was: " + type);
+	    }
+
 	    // Convert enum to string (optional, for convenience)
 	    public String[] toStringArray() {
 	        return java.util.Arrays.stream(values())
@@ -0,0 +1,291 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonParser.NumberType;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * The values of a JSON object in a request body, read token by token into an array in the order of the columns of
+ * the object. Each value is converted once, when it is read, to the Java type for the JDBC type of its column so that
+ * it can be bound with the typed setter. Numbers are not read as doubles, so NUMERIC values keep their precision.
+ * The row is a read only {@link java.util.Map} of column name to value, with the columns in column order.
+ */
+final class TypedRow extends AbstractMap<String, Object> {
+	private final ObjectMetadata metadata;
+	private final Object[] values;
+	private final boolean[] present;
+	private int size;
+
+	private TypedRow(final ObjectMetadata metadata) {
+		this.metadata = metadata;
+		this.values = new Object[metadata.columns.size()];
+		this.present = new boolean[values.length];
+	}
+
+	/**
+	 * Read the JSON object at the current token of the parser, which is left at the end of the object.
+	 * @throws IllegalArgumentException if a field is not a column of the object or its value is not valid for the
+	 * column, before any SQL is run
+	 */
+	static TypedRow read(final JsonParser parser, final ObjectMetadata metadata) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			throw new IllegalArgumentException("Expected a JSON object");
+		}
+		final TypedRow row = new TypedRow(metadata);
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String name = parser.currentName();
+			final int index = metadata.columnIndex(name);
+			if (index < 0) {
+				throw new IllegalArgumentException("Unknown column " + name + " in " + metadata.objectName);
+			}
+			final ColumnMetadata column = metadata.columns.get(index);
+			final JsonToken token = parser.nextToken();
+			try {
+				row.values[index] = value(parser, token, column);
+			} catch (NumberFormatException | DateTimeParseException | ArithmeticException e) {
+				throw new IllegalArgumentException("Invalid value for column " + column.columnName + ": " + e.getMessage());
+			}
+			if (!row.present[index]) {
+				row.present[index] = true;
+				row.size++;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Convert the value at the current token to the Java type for the JDBC type of the column.
+	 */
+	private static Object value(final JsonParser parser, final JsonToken token, final ColumnMetadata column)
+			throws IOException {
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+			// JSON documents are only stored in character or database specific JSON columns
+			switch (column.dataType) {
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+			case Types.CLOB:
+			case Types.NCLOB:
+			case Types.OTHER:
+				return parser.readValueAsTree().toString();
+			default:
+				throw new IllegalArgumentException("Invalid value for column " + column.columnName + ": " + token);
+			}
+		}
+		final String text = parser.getText();
+		switch (column.dataType) {
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+		case Types.CLOB:
+		case Types.NCLOB:
+			return text;
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			if (token == JsonToken.VALUE_NUMBER_INT) {
+				return (parser.getNumberType() == NumberType.BIG_INTEGER) ? parser.getDecimalValue()
+						: (Object) parser.getLongValue();
+			}
+			if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+				return parser.getDecimalValue();
+			}
+			return number(new BigDecimal(text.trim()));
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+		case ColumnCodec.ORACLE_BINARY_FLOAT:
+		case ColumnCodec.ORACLE_BINARY_DOUBLE:
+			return token.isNumeric() ? parser.getDoubleValue() : Double.parseDouble(text.trim());
+		case Types.BOOLEAN:
+		case Types.BIT:
+			if (token.isBoolean()) {
+				return token == JsonToken.VALUE_TRUE;
+			}
+			return token.isNumeric() ? parser.getIntValue() != 0 : Boolean.parseBoolean(text.trim());
+		case Types.DATE:
+			return token.isNumeric() ? new Date(parser.getLongValue()) : Date.valueOf(LocalDate.parse(text.trim()));
+		case Types.TIME:
+			return Time.valueOf(LocalTime.parse(text.trim()));
+		case Types.TIMESTAMP:
+		case ColumnCodec.ORACLE_TIMESTAMPLTZ:
+			// Milliseconds since the epoch, as timestamps are written in responses
+			return token.isNumeric() ? new Timestamp(parser.getLongValue()) : timestamp(text.trim());
+		case Types.TIMESTAMP_WITH_TIMEZONE:
+		case ColumnCodec.ORACLE_TIMESTAMPTZ:
+			return token.isNumeric() ? OffsetDateTime.ofInstant(Instant.ofEpochMilli(parser.getLongValue()), ZoneOffset.UTC)
+					: OffsetDateTime.parse(text.trim());
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			if (token != JsonToken.VALUE_STRING) {
+				throw new IllegalArgumentException("Invalid value for column " + column.columnName + ": expected Base64");
+			}
+			return parser.getBinaryValue();
+		default:
+			if (token == JsonToken.VALUE_NUMBER_INT) {
+				return (parser.getNumberType() == NumberType.BIG_INTEGER) ? parser.getDecimalValue()
+						: (Object) parser.getLongValue();
+			}
+			if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+				return parser.getDecimalValue();
+			}
+			if (token.isBoolean()) {
+				return token == JsonToken.VALUE_TRUE;
+			}
+			return text;
+		}
+	}
+
+	/**
+	 * A whole number that fits is bound as a long.
+	 */
+	private static Object number(final BigDecimal value) {
+		if (value.scale() <= 0 && value.precision() - value.scale() <= ColumnCodec.LONG_DIGITS) {
+			return value.longValueExact();
+		}
+		return value;
+	}
+
+	/**
+	 * An ISO-8601 date and time with or without an offset, or a date.
+	 */
+	private static Timestamp timestamp(final String text) {
+		if (text.length() <= 10) {
+			return Timestamp.valueOf(LocalDate.parse(text).atStartOfDay());
+		}
+		try {
+			return Timestamp.valueOf(LocalDateTime.parse(text));
+		} catch (DateTimeParseException e) {
+			return Timestamp.from(OffsetDateTime.parse(text).toInstant());
+		}
+	}
+
+	/**
+	 * Bind the value of a column with the setter for its type.
+	 * @param column the name of a column in this row
+	 */
+	void bind(final PreparedStatement statement, final int parameterIndex, final String column) throws SQLException {
+		final int index = metadata.columnIndex(column);
+		final Object value = values[index];
+		final int dataType = metadata.columns.get(index).dataType;
+		if (value == null) {
+			statement.setNull(parameterIndex, dataType);
+		} else if (value instanceof Long) {
+			statement.setLong(parameterIndex, (Long) value);
+		} else if (value instanceof BigDecimal) {
+			statement.setBigDecimal(parameterIndex, (BigDecimal) value);
+		} else if (value instanceof Double) {
+			statement.setDouble(parameterIndex, (Double) value);
+		} else if (value instanceof Boolean) {
+			statement.setBoolean(parameterIndex, (Boolean) value);
+		} else if (value instanceof Timestamp) {
+			statement.setTimestamp(parameterIndex, (Timestamp) value);
+		} else if (value instanceof Date) {
+			statement.setDate(parameterIndex, (Date) value);
+		} else if (value instanceof Time) {
+			statement.setTime(parameterIndex, (Time) value);
+		} else if (value instanceof byte[]) {
+			statement.setBytes(parameterIndex, (byte[]) value);
+		} else if (value instanceof String && dataType == Types.OTHER) {
+			// For example PostgreSQL uuid and jsonb, which the database converts from text
+			statement.setObject(parameterIndex, value, Types.OTHER);
+		} else if (value instanceof String) {
+			statement.setString(parameterIndex, (String) value);
+		} else {
+			statement.setObject(parameterIndex, value);
+		}
+	}
+
+	@Override
+	public Object get(final Object key) {
+		final int index = (key instanceof String) ? metadata.columnIndex((String) key) : -1;
+		return (index < 0) ? null : values[index];
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		final int index = (key instanceof String) ? metadata.columnIndex((String) key) : -1;
+		return index >= 0 && present[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new Iterator<Entry<String, Object>>() {
+					private int index = next(0);
+
+					private int next(final int from) {
+						int i = from;
+						while (i < present.length && !present[i]) {
+							i++;
+						}
+						return i;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return index < present.length;
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						final Entry<String, Object> entry = new SimpleImmutableEntry<String, Object>(
+								metadata.columns.get(index).columnName, values[index]);
+						index = next(index + 1);
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
@@ -0,0 +1,103 @@
+package blog.peterobrien.jdbc.autorest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.inject.Inject;
+import oracle.dbtools.plugin.api.di.annotations.ApplicationScoped;
+import oracle.dbtools.plugin.api.di.annotations.Provides;
+import oracle.dbtools.plugin.api.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates every <code>x-autorest</code> resource in a document and primes the {@link MetadataCache} when readiness
+ * is checked for a pool and database user, when <code>autorest.warmup.enabled</code> is true. The warm-up runs once
+ * for each pool, database user and loaded document. It needs a connection and the only one available is the one
+ * ORDS provides for the readiness check, which is released when the check is answered. So each readiness check
+ * resolves the resources not yet taken by another check for at most {@link #SLICE_MILLIS} and is answered as not
+ * ready until every resource has been resolved. Concurrent readiness checks share the remaining resources rather than
+ * waiting for each other, and requests for resources are serviced without waiting.
+ */
+@ApplicationScoped
+@Provides
+public class WarmUp {
+
+    /**
+     * Maximum number of pool, database user and document combinations for which the summary is kept.
+     */
+    static final int MAX_SUMMARIES = 256;
+
+    /**
+     * How long a readiness check resolves resources for before it is answered.
+     */
+    static final long SLICE_MILLIS = 500;
+
+    private final Cache<Key, Progress> warmUps = Caffeine.newBuilder().maximumSize(MAX_SUMMARIES).build();
+    private final Log log;
+
+    /**
+     * @param log reports the summary of each warm-up
+     */
+    @Inject
+    public WarmUp(final Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Start the warm-up for the pool and database user of the connection, or continue the one already started, for
+     * at most sliceMillis.
+     * @return the summary of the warm-up, which is only finished once every resource has been resolved
+     */
+    WarmUpSummary warmUp(final AutoRESTJDBC autoRESTJDBC, final AutoRESTDocument document, final long sliceMillis) {
+        final Progress progress = warmUps.get(new Key(autoRESTJDBC.pool, autoRESTJDBC.schema, document),
+                k -> new Progress(document));
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+        ServiceDefinition sd;
+        while (System.nanoTime() - deadline < 0 && (sd = progress.remaining.poll()) != null) {
+            String problem;
+            try {
+                problem = autoRESTJDBC.prime(sd);
+            } catch (RuntimeException e) {
+                problem = e.toString();
+            }
+            if (progress.summary.resource(sd, problem)) {
+                progress.summary.finished(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - progress.start));
+                log.info(progress.summary.toString());
+            }
+        }
+        return progress.summary;
+    }
+
+    /**
+     * @return the summary for the pool and database user of the connection, or null if the warm-up has not started
+     */
+    WarmUpSummary summary(final AutoRESTJDBC autoRESTJDBC, final AutoRESTDocument document) {
+        final Progress progress = warmUps.getIfPresent(new Key(autoRESTJDBC.pool, autoRESTJDBC.schema, document));
+        return (progress == null) ? null : progress.summary;
+    }
+
+    /**
+     * The resources of a document which no readiness check has taken yet and the summary of those resolved.
+     */
+    private static final class Progress {
+        private final long start = System.nanoTime();
+        private final Queue<ServiceDefinition> remaining;
+        private final WarmUpSummary summary;
+
+        private Progress(final AutoRESTDocument document) {
+            final List<ServiceDefinition> services = new ArrayList<ServiceDefinition>();
+            for (Route route : document.routes.routes()) {
+                services.addAll(route.services());
+            }
+            this.remaining = new ConcurrentLinkedQueue<ServiceDefinition>(services);
+            this.summary = new WarmUpSummary(document.problems, services.size());
+        }
+    }
+
+    private record Key(String pool, String user, AutoRESTDocument document) {
+    }
+}
@@ -0,0 +1,104 @@
+package blog.peterobrien.jdbc.autorest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Outcome of a {@link WarmUp}: the number of resources resolved and each resource which cannot be serviced. Resources
+ * are resolved by concurrent readiness checks so the summary is updated and read while holding its lock.
+ */
+public class WarmUpSummary {
+	private final List<String> documentProblems;
+	private final List<Broken> broken = new ArrayList<Broken>();
+	private final int total;
+	private int resources;
+	private long durationMillis;
+	private boolean finished;
+
+	/**
+	 * @param total the number of resources in the document
+	 */
+	WarmUpSummary(final List<String> documentProblems, final int total) {
+		this.documentProblems = documentProblems;
+		this.total = total;
+		this.finished = total == 0;
+	}
+
+	/**
+	 * @param problem why the resource cannot be serviced, or null if it was resolved
+	 * @return true if this was the last resource of the document
+	 */
+	synchronized boolean resource(final ServiceDefinition sd, final String problem) {
+		resources++;
+		if (problem != null) {
+			broken.add(new Broken(sd.path, (sd.owner == null) ? sd.identifier : sd.owner + "." + sd.identifier,
+					problem));
+		}
+		return resources == total;
+	}
+
+	synchronized void finished(final long durationMillis) {
+		this.durationMillis = durationMillis;
+		this.finished = true;
+	}
+
+	/**
+	 * @return true if every resource in the document has been resolved
+	 */
+	synchronized boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return true once every resource in the document has been resolved and can be serviced
+	 */
+	synchronized boolean isHealthy() {
+		return finished && broken.isEmpty() && documentProblems.isEmpty();
+	}
+
+	/**
+	 * Write the summary as <code>{"resources":n,"pending":n,"durationMillis":n,"broken":[{"path":...,"object":...,
+	 * "problem":...}],"documentProblems":[...]}</code>, where pending is the number of resources not yet resolved.
+	 */
+	synchronized void write(final JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeNumberField("resources", resources);
+		generator.writeNumberField("pending", total - resources);
+		generator.writeNumberField("durationMillis", durationMillis);
+		generator.writeArrayFieldStart("broken");
+		for (Broken resource : broken) {
+			generator.writeStartObject();
+			generator.writeStringField("path", resource.path);
+			generator.writeStringField("object", resource.object);
+			generator.writeStringField("problem", resource.problem);
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+		generator.writeArrayFieldStart("documentProblems");
+		for (String problem : documentProblems) {
+			generator.writeString(problem);
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	@Override
+	public synchronized String toString() {
+		final StringBuilder text = new StringBuilder("AutoREST warm-up resolved ").append(resources)
+				.append(" resources in ").append(durationMillis).append("ms");
+		for (Broken resource : broken) {
+			text.append("\n  ").append(resource.path).append(' ').append(resource.object).append(": ")
+					.append(resource.problem);
+		}
+		for (String problem : documentProblems) {
+			text.append("\n  ").append(problem);
+		}
+		return text.toString();
+	}
+
+	private record Broken(String path, String object, String problem) {
+	}
+}
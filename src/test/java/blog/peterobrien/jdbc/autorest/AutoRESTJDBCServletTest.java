@@ -1,11 +1,18 @@
 package blog.peterobrien.jdbc.autorest;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.Operation;
@@ -16,21 +23,34 @@ import io.swagger.v3.oas.models.parameters.Parameter;
 import io.swagger.v3.oas.models.servers.Server;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.junit.Before;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import oracle.dbtools.plugin.api.logging.Log;
@@ -85,10 +105,13 @@ public class AutoRESTJDBCServletTest {
     private PathTemplates pathTemplates;
     private OpenAPI openAPI;
     private StringWriter stringWriter;
+    private ByteArrayOutputStream outputStream;
 
     @Before
-    public void setUp() throws IOException {
+    public void setUp() throws IOException, SQLException {
     	autoRESTJDBC = mock(AutoRESTJDBC.class);
+        when(autoRESTJDBC.rowCodec(any(ResultSet.class)))
+                .thenAnswer(invocation -> RowCodec.of(invocation.<ResultSet>getArgument(0).getMetaData()));
     	log = mock(Log.class);
     	openAPICache = mock(OpenAPICache.class);
     	pathTemplates = mock(PathTemplates.class);
@@ -129,6 +152,7 @@ public class AutoRESTJDBCServletTest {
     	openAPI.path("/resources/{id}", resourcePathItem);
 
         when(openAPICache.getOpenAPIDocument(AutoRESTSettings._AUTOREST_API_DOC.defaultValue().toString())).thenReturn(openAPI);
+        when(openAPICache.getAutoRESTDocument(AutoRESTSettings._AUTOREST_API_DOC.defaultValue().toString())).thenReturn(new AutoRESTDocument(openAPI));
         
         myServlet = new AutoRESTJDBCServlet(autoRESTJDBC, log, "openapi.yaml", openAPICache, pathTemplates);
         request = mock(HttpServletRequest.class);
@@ -138,6 +162,24 @@ public class AutoRESTJDBCServletTest {
         // Set up the PrintWriter to use StringWriter
         PrintWriter writer = new PrintWriter(stringWriter);
         when(response.getWriter()).thenReturn(writer);        
+
+        // Set up the ServletOutputStream to use ByteArrayOutputStream
+        outputStream = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                outputStream.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
         
         
     }
@@ -152,10 +194,47 @@ public class AutoRESTJDBCServletTest {
         
         myServlet.doGet(request, response);
 
-        verify(response).getWriter();
+        verify(response).getOutputStream();
         verify(response).setContentType("application/yaml");
         verify(response).setCharacterEncoding("UTF-8");
-        assertTrue("Response not an OpenAPI document", this.stringWriter.toString().contains("openapi"));
+        final String document = this.outputStream.toString(StandardCharsets.UTF_8);
+        assertTrue("Response not an OpenAPI document", document.contains("openapi"));
+        assertTrue("Server URL not the request URL", document.contains("https://localhost/ords/mydb/autorest"));
+    }
+
+    @Test
+    public void testDoGetAPIDocumentNotModified() throws ServletException, IOException {
+    	final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getRequestURL()).thenReturn(new StringBuffer("https://otherhost/ords/mydb/autorest/openapi.json"));
+        when(request.getMethod()).thenReturn("GET");
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+        when(pathTemplateMatch.name()).thenReturn("APIDocumentJSON");
+
+        myServlet.doGet(request, response);
+
+        verify(response).setContentType("application/json");
+        assertTrue(this.outputStream.toString(StandardCharsets.UTF_8).contains("\"url\":\"https://otherhost/ords/mydb/autorest\""));
+        // The shared model is not changed for the request
+        assertNull(openAPI.getServers().get(0).getUrl());
+
+        final ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        final HttpServletResponse revalidation = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+        myServlet.doGet(request, revalidation);
+        verify(revalidation).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        // A tag marked weak by a gateway still matches, but the tag of the gzip representation does not
+        final HttpServletResponse weak = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn("W/" + etag.getValue());
+        myServlet.doGet(request, weak);
+        verify(weak).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        final ServletOutputStream body = response.getOutputStream();
+        final HttpServletResponse gzipTag = mock(HttpServletResponse.class);
+        when(gzipTag.getOutputStream()).thenReturn(body);
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue().replace("\"", "-gzip\""));
+        myServlet.doGet(request, gzipTag);
+        verify(gzipTag, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
     }
 
     @Test
@@ -172,7 +251,102 @@ public class AutoRESTJDBCServletTest {
 
         myServlet.doGet(request, response);
 
-        verify(response).getWriter();
+        verify(response).getOutputStream();
+        assertEquals("Response not for the collection", "{\"items\":[],\"limit\":25,\"offset\":0,\"count\":0}", this.outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDoGetCollectionInvalidPaging() throws ServletException, IOException, SQLException {
+    	final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("GET");
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+        when(pathTemplateMatch.name()).thenReturn("Service");
+
+        when(request.getParameter("limit")).thenReturn("0");
+        myServlet.doGet(request, response);
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be a whole number of at least 1");
+
+        when(request.getParameter("limit")).thenReturn("ten");
+        myServlet.doGet(request, response);
+        verify(response, times(2)).sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be a whole number of at least 1");
+
+        when(request.getParameter("limit")).thenReturn("10");
+        when(request.getParameter("offset")).thenReturn("-1");
+        myServlet.doGet(request, response);
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "offset must be a whole number of at least 0");
+        verify(autoRESTJDBC, never()).service(any(ServiceDefinition.class), any(SupportedAction.class), any(Map.class));
+    }
+
+    @Test
+    public void testDoGetCollectionExportNDJSON() throws ServletException, IOException, SQLException {
+    	final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Accept")).thenReturn("application/x-ndjson");
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+        when(pathTemplateMatch.name()).thenReturn("Service");
+
+        ResultSet rs = mock(ResultSet.class);
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.GET),
+        		argThat(params -> Boolean.TRUE.equals(params.get("export"))))).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        ResultSetMetaData md = mock(ResultSetMetaData.class);
+        when(rs.getMetaData()).thenReturn(md);
+        when(rs.getObject(1)).thenReturn(101, 102);
+        when(md.getColumnCount()).thenReturn(1);
+        when(md.getColumnLabel(1)).thenReturn("id");
+
+        myServlet.doGet(request, response);
+
+        verify(response).setContentType("application/x-ndjson");
+        assertEquals("{\"id\":101}\n{\"id\":102}\n", this.outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDoGetCollectionCSV() throws ServletException, IOException, SQLException {
+    	final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("Accept")).thenReturn("text/csv, application/json;q=0.5");
+        when(request.getParameter("limit")).thenReturn("1");
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+        when(pathTemplateMatch.name()).thenReturn("Service");
+
+        ResultSet rs = mock(ResultSet.class);
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.GET), any(Map.class))).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, false);
+        ResultSetMetaData md = mock(ResultSetMetaData.class);
+        when(rs.getMetaData()).thenReturn(md);
+        when(rs.getString(1)).thenReturn("101", "102");
+        when(rs.getString(2)).thenReturn("Smith, \"Jr\"", "Jones");
+        when(md.getColumnCount()).thenReturn(2);
+        when(md.getColumnLabel(1)).thenReturn("id");
+        when(md.getColumnLabel(2)).thenReturn("name");
+
+        myServlet.doGet(request, response);
+
+        verify(response).setContentType("text/csv");
+        assertEquals("id,name\r\n101,\"Smith, \"\"Jr\"\"\"\r\n", this.outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDoGetCollectionTotalResults() throws ServletException, IOException, SQLException {
+    	final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getParameter("totalResults")).thenReturn("estimated");
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+        when(pathTemplateMatch.name()).thenReturn("Service");
+
+        ResultSet rs = mock(ResultSet.class);
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.GET), any(Map.class))).thenReturn(rs);
+        when(autoRESTJDBC.totalResults(any(ServiceDefinition.class), eq("estimated"), isNull())).thenReturn(107L);
+
+        myServlet.doGet(request, response);
+
+        assertEquals("{\"items\":[],\"limit\":25,\"offset\":0,\"count\":0,\"totalResults\":107}",
+        		this.outputStream.toString(StandardCharsets.UTF_8));
     }
 
     @Test
@@ -199,19 +373,73 @@ public class AutoRESTJDBCServletTest {
 
         myServlet.doGet(request, response);
 
-        verify(response).getWriter();
+        verify(response).getOutputStream();
         verify(response).setContentType("application/json");
         verify(response).setCharacterEncoding("UTF-8");
-        assertEquals("Response not for the resource item", "{\"id\":101}", this.stringWriter.toString());
+        assertEquals("Response not for the resource item", "{\"id\":101}", this.outputStream.toString(StandardCharsets.UTF_8));
         
     }
 
     @Test
-    public void testDoPost() throws ServletException, IOException {
+    public void testDoGetCollectionKeyset() throws ServletException, IOException, SQLException {
+    	final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getParameter("limit")).thenReturn("2");
+        when(request.getParameter("after")).thenReturn(KeysetToken.encode(new Object[] {100}));
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+        when(pathTemplateMatch.name()).thenReturn("Service");
+
+        // Primary key of the table is the id column
+        final ResultSet pkResultSet = mock(ResultSet.class);
+        when(pkResultSet.next()).thenReturn(true, false);
+        when(pkResultSet.getString("COLUMN_NAME")).thenReturn("id");
+        final ObjectMetadata metadata = new ObjectMetadata("TABLE", "employees", new PrimaryKeyStructure(pkResultSet), List.of(), null);
+        when(autoRESTJDBC.metadata(any(ServiceDefinition.class))).thenReturn(metadata);
+
+        // Three rows are returned for a limit of 2, so there are more rows
+        ResultSet rs = mock(ResultSet.class);
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.GET), any(Map.class))).thenReturn(rs);
+        when(rs.next()).thenReturn(true, true, true, false);
+        ResultSetMetaData md = mock(ResultSetMetaData.class);
+        when(rs.getMetaData()).thenReturn(md);
+        when(md.getColumnCount()).thenReturn(1);
+        when(md.getColumnLabel(1)).thenReturn("id");
+        when(rs.getObject(1)).thenReturn(101, 102);
+        when(rs.getObject("id")).thenReturn(101, 102);
+
+        myServlet.doGet(request, response);
+
+        assertEquals("{\"items\":[{\"id\":101},{\"id\":102}],\"limit\":2,\"count\":2,\"hasMore\":true,\"next\":\"" + KeysetToken.encode(new Object[] {102}) + "\"}",
+        		this.outputStream.toString(StandardCharsets.UTF_8));
+        assertArrayEquals(new Object[] {102}, KeysetToken.decode(KeysetToken.encode(new Object[] {102})));
+    }
+
+    /**
+     * Metadata for the employees table with an id primary key, key and name VARCHAR columns and a NUMERIC salary.
+     */
+    private void stubMetadata() throws SQLException {
+        final ResultSet pkResultSet = mock(ResultSet.class);
+        when(pkResultSet.next()).thenReturn(true, false);
+        when(pkResultSet.getString("COLUMN_NAME")).thenReturn("id");
+        final List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+        for (Object[] column : new Object[][] { { "id", Types.VARCHAR }, { "key", Types.VARCHAR }, { "name", Types.VARCHAR }, { "salary", Types.NUMERIC } }) {
+            final ResultSet columnResultSet = mock(ResultSet.class);
+            when(columnResultSet.getString("COLUMN_NAME")).thenReturn((String) column[0]);
+            when(columnResultSet.getInt("DATA_TYPE")).thenReturn((Integer) column[1]);
+            columns.add(new ColumnMetadata(columnResultSet));
+        }
+        final ObjectMetadata metadata = new ObjectMetadata("TABLE", "employees", new PrimaryKeyStructure(pkResultSet), columns, null);
+        when(autoRESTJDBC.metadata(any(ServiceDefinition.class))).thenReturn(metadata);
+    }
+
+    @Test
+    public void testDoPost() throws ServletException, IOException, SQLException {
         when(request.getPathInfo()).thenReturn("/autorest/resources/");
         when(request.getMethod()).thenReturn("POST");
         when(request.getContentType()).thenReturn("application/json");
         when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"id\":\"value\"}")));
+        stubMetadata();
 
         ResultSet rs = mock(ResultSet.class);
         when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.POST), any(Map.class))).thenReturn(rs);
@@ -219,28 +447,136 @@ public class AutoRESTJDBCServletTest {
         myServlet.doPost(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_CREATED);
-        verify(response).getWriter();
+        verify(response).getOutputStream();
         verify(response).setContentType("application/json");
         verify(response).setCharacterEncoding("UTF-8");
     }
 
     @Test
-    public void testDoPut() throws ServletException, IOException {
+    public void testDoPostBulk() throws ServletException, IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentType()).thenReturn("application/x-ndjson; charset=UTF-8");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"id\":1}\n{\"id\":2}\n{\"id\":3}\n")));
+        stubMetadata();
+
+        when(autoRESTJDBC.bulkInsert(any(ServiceDefinition.class), any(RowReader.class), eq(1000))).thenAnswer(invocation -> {
+            final RowReader rows = invocation.getArgument(1);
+            final BulkInsertSummary summary = new BulkInsertSummary();
+            int count = 0;
+            while (rows.next() != null) {
+                count++;
+            }
+            summary.committed(count);
+            return summary;
+        });
+
+        myServlet.doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_CREATED);
+        assertEquals("{\"rows\":3,\"chunks\":[{\"rows\":3,\"status\":\"committed\"}]}",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDoPostTyped() throws ServletException, IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentType()).thenReturn("application/json");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(
+                "{\"NAME\":\"Smith\",\"salary\":12345678901234567890.12345,\"key\":42}")));
+        stubMetadata();
+
+        ResultSet rs = mock(ResultSet.class);
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.POST), any(Map.class))).thenReturn(rs);
+
+        myServlet.doPost(request, response);
+
+        // Values are in column order, with NUMERIC at full precision and the number for a VARCHAR as text
+        final ArgumentCaptor<Map<String, Object>> values = ArgumentCaptor.forClass(Map.class);
+        verify(autoRESTJDBC).service(any(ServiceDefinition.class), eq(SupportedAction.POST), values.capture());
+        assertEquals(List.of("key", "name", "salary"), List.copyOf(values.getValue().keySet()));
+        assertEquals(new BigDecimal("12345678901234567890.12345"), values.getValue().get("salary"));
+        assertEquals("42", values.getValue().get("key"));
+        verify(response).setStatus(HttpServletResponse.SC_CREATED);
+    }
+
+    @Test
+    public void testDoPostUnknownColumn() throws ServletException, IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getContentType()).thenReturn("application/json");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"id\":1,\"bonus\":100}")));
+        stubMetadata();
+
+        myServlet.doPost(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown column bonus in employees");
+        verify(autoRESTJDBC, never()).service(any(ServiceDefinition.class), any(SupportedAction.class), any(Map.class));
+    }
+
+    @Test
+    public void testDoPut() throws ServletException, IOException, SQLException {
         when(request.getPathInfo()).thenReturn("/autorest/resources/101");
         when(request.getMethod()).thenReturn("PUT");
         when(request.getContentType()).thenReturn("application/json");
         when(request.getReader()).thenReturn(new BufferedReader(new StringReader("{\"key\":\"updatedValue\"}")));
+        stubMetadata();
 
         ResultSet rs = mock(ResultSet.class);
         when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.PUT), any(Map.class))).thenReturn(rs);
         myServlet.doPut(request, response);
 
         verify(response).setStatus(HttpServletResponse.SC_OK);
-        verify(response).getWriter();
+        verify(response).getOutputStream();
         verify(response).setContentType("application/json");
         verify(response).setCharacterEncoding("UTF-8");
     }
 
+    @Test
+    public void testDoGetReady() throws ServletException, IOException {
+        final AutoRESTConfiguration configuration = new AutoRESTConfiguration("1000", "1000", "1024", "true", "false",
+                "false", "30000", "64", "false");
+        final AutoRESTJDBCServlet servlet = new AutoRESTJDBCServlet(autoRESTJDBC, log, "openapi.yaml", openAPICache,
+                pathTemplates, configuration, new WarmUp(log));
+        when(autoRESTJDBC.prime(any(ServiceDefinition.class))).thenReturn("TABLE is not visible");
+        final PathTemplateMatch pathTemplateMatch = mock(PathTemplateMatch.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(pathTemplates.matchedTemplate(request)).thenReturn(pathTemplateMatch);
+
+        // Requests for resources do not run the warm-up
+        when(request.getPathInfo()).thenReturn("/autorest/resources/");
+        when(pathTemplateMatch.name()).thenReturn("Service");
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.GET), any(Map.class))).thenReturn(mock(ResultSet.class));
+        servlet.doGet(request, response);
+        verify(autoRESTJDBC, never()).prime(any(ServiceDefinition.class));
+
+        final HttpServletResponse readiness = mock(HttpServletResponse.class);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(readiness.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        when(request.getPathInfo()).thenReturn("/autorest/_/ready");
+        when(pathTemplateMatch.name()).thenReturn("Ready");
+        servlet.doGet(request, readiness);
+
+        verify(autoRESTJDBC, atLeastOnce()).prime(any(ServiceDefinition.class));
+        verify(readiness).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertTrue(body.toString(StandardCharsets.UTF_8), body.toString(StandardCharsets.UTF_8).startsWith("{\"ready\":false,"));
+    }
+
     @Test
     public void testDoDelete() throws ServletException, IOException {
         when(request.getPathInfo()).thenReturn("/autorest/resources/101");
@@ -252,4 +588,83 @@ public class AutoRESTJDBCServletTest {
 
         verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
     }
+
+    /**
+     * A servlet in async mode whose requests run when the returned list of tasks is run.
+     */
+    private AutoRESTJDBCServlet asyncServlet(final List<Runnable> tasks, final AsyncContext async) {
+        final AutoRESTConfiguration configuration = new AutoRESTConfiguration("1000", "1000", "1024", "false", "false",
+                "true", "5000", "1", "true");
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(any(HttpServletRequest.class), any(HttpServletResponse.class))).thenReturn(async);
+        return new AutoRESTJDBCServlet(autoRESTJDBC, log, "openapi.yaml", openAPICache, pathTemplates, configuration,
+                new WarmUp(log), new AsyncExecutor(tasks::add), new RequestCoalescer());
+    }
+
+    @Test
+    public void testDoDeleteAsync() throws ServletException, IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/autorest/resources/101");
+        when(request.getMethod()).thenReturn("DELETE");
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.DELETE), any(Map.class))).thenReturn(Integer.valueOf(1));
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final AsyncContext async = mock(AsyncContext.class);
+        final AutoRESTJDBCServlet servlet = asyncServlet(tasks, async);
+
+        servlet.doDelete(request, response);
+        // The container thread returns before the delete, and the injected connection is used after doDelete
+        // returns, so it is not released until the request thread has finished with it
+        verify(autoRESTJDBC, never()).service(any(ServiceDefinition.class), any(SupportedAction.class), any(Map.class));
+        verify(autoRESTJDBC, never()).close();
+        verify(async, never()).complete();
+        verify(async).setTimeout(5000);
+
+        // Only one asynchronous request at a time
+        servlet.doDelete(request, response);
+        verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many requests in progress");
+
+        tasks.get(0).run();
+        final InOrder inOrder = inOrder(autoRESTJDBC, async);
+        inOrder.verify(autoRESTJDBC).service(any(ServiceDefinition.class), eq(SupportedAction.DELETE), any(Map.class));
+        inOrder.verify(autoRESTJDBC).close();
+        inOrder.verify(async).complete();
+        verify(response).setStatus(HttpServletResponse.SC_NO_CONTENT);
+        verify(autoRESTJDBC, times(2)).close();
+        verify(async, times(2)).complete();
+    }
+
+    @Test
+    public void testDoDeleteAsyncTimeout() throws ServletException, IOException, SQLException, InterruptedException {
+        when(request.getPathInfo()).thenReturn("/autorest/resources/101");
+        when(request.getMethod()).thenReturn("DELETE");
+        when(autoRESTJDBC.service(any(ServiceDefinition.class), eq(SupportedAction.DELETE), any(Map.class))).thenReturn(Integer.valueOf(1));
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final AsyncContext async = mock(AsyncContext.class);
+        final AutoRESTJDBCServlet servlet = asyncServlet(tasks, async);
+
+        servlet.doDelete(request, response);
+        final ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(async).addListener(listener.capture());
+        final Thread container = new Thread(() -> {
+            try {
+                listener.getValue().onTimeout(new AsyncEvent(async));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        container.start();
+        verify(autoRESTJDBC, timeout(1000)).cancel();
+        // The request is not completed while the request thread may still use the connection
+        verify(async, never()).complete();
+
+        // The request thread finishing late releases the connection without writing to the response
+        tasks.get(0).run();
+        container.join(AutoRESTJDBCServlet.TIMEOUT_GRACE_MILLIS);
+        final InOrder inOrder = inOrder(autoRESTJDBC, response, async);
+        inOrder.verify(autoRESTJDBC).cancel();
+        inOrder.verify(autoRESTJDBC).close();
+        inOrder.verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out");
+        inOrder.verify(async).complete();
+        verify(response, never()).setStatus(HttpServletResponse.SC_NO_CONTENT);
+        verify(async).complete();
+    }
 }
@@ -0,0 +1,79 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+import blog.peterobrien.jdbc.autorest.CompressingOutputStream.Encoding;
+
+/**
+ * Unit tests for compressing responses above the size threshold.
+ * @author peobrie
+ *
+ */
+public class CompressingOutputStreamTest {
+	private static final byte[] LARGE = "{\"id\":101,\"name\":\"Smith\"}\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+	private static byte[] write(final Encoding encoding, final byte[] content, final List<Encoding> compressed)
+			throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (CompressingOutputStream stream = new CompressingOutputStream(out, encoding, 1024, compressed::add)) {
+			// Write in pieces with flushes, as the JSON generator does
+			for (int offset = 0; offset < content.length; offset += 500) {
+				stream.write(content, offset, Math.min(500, content.length - offset));
+				stream.flush();
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		final List<Encoding> compressed = new ArrayList<Encoding>();
+		final byte[] gzipped = write(Encoding.GZIP, LARGE, compressed);
+		assertEquals(List.of(Encoding.GZIP), compressed);
+		assertTrue(gzipped.length < LARGE.length / 5);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+			assertArrayEquals(LARGE, in.readAllBytes());
+		}
+		// A pooled deflater is reset before it is used again
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(write(Encoding.GZIP, LARGE, compressed)))) {
+			assertArrayEquals(LARGE, in.readAllBytes());
+		}
+	}
+
+	@Test
+	public void testDeflate() throws IOException {
+		final List<Encoding> compressed = new ArrayList<Encoding>();
+		try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(write(Encoding.DEFLATE, LARGE, compressed)))) {
+			assertArrayEquals(LARGE, in.readAllBytes());
+		}
+		assertEquals(List.of(Encoding.DEFLATE), compressed);
+	}
+
+	@Test
+	public void testBelowThreshold() throws IOException {
+		final List<Encoding> compressed = new ArrayList<Encoding>();
+		final byte[] small = "{\"id\":101}".getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(small, write(Encoding.GZIP, small, compressed));
+		assertTrue(compressed.isEmpty());
+	}
+
+	@Test
+	public void testNegotiate() {
+		assertNull(CompressingOutputStream.negotiate(null));
+		assertNull(CompressingOutputStream.negotiate("br, identity"));
+		assertEquals(Encoding.GZIP, CompressingOutputStream.negotiate("deflate, gzip;q=0.8"));
+		assertEquals(Encoding.DEFLATE, CompressingOutputStream.negotiate("gzip;q=0, deflate"));
+	}
+}
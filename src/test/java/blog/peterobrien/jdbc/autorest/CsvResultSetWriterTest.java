@@ -0,0 +1,56 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for writing columns of each type as CSV.
+ * @author peobrie
+ *
+ */
+public class CsvResultSetWriterTest {
+
+	@Test
+	public void testWriteRows() throws SQLException, IOException {
+		final ResultSet resultSet = mock(ResultSet.class);
+		final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+		when(resultSet.getMetaData()).thenReturn(metaData);
+		when(metaData.getColumnCount()).thenReturn(4);
+		when(metaData.getColumnLabel(1)).thenReturn("id");
+		when(metaData.getColumnType(1)).thenReturn(Types.INTEGER);
+		when(metaData.isSigned(1)).thenReturn(true);
+		when(metaData.getColumnLabel(2)).thenReturn("resume");
+		when(metaData.getColumnType(2)).thenReturn(Types.CLOB);
+		when(metaData.getColumnLabel(3)).thenReturn("photo");
+		when(metaData.getColumnType(3)).thenReturn(Types.BLOB);
+		when(metaData.getColumnLabel(4)).thenReturn("name");
+		when(metaData.getColumnType(4)).thenReturn(Types.VARCHAR);
+		when(resultSet.next()).thenReturn(true, true, false);
+		when(resultSet.getLong(1)).thenReturn(-101L, 0L);
+		when(resultSet.wasNull()).thenReturn(false, true);
+		when(resultSet.getCharacterStream(2)).thenReturn(new StringReader("Says \"hi\""), null);
+		when(resultSet.getBinaryStream(3)).thenReturn(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), null);
+		when(resultSet.getString(4)).thenReturn("Smith", null);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CsvResultSetWriter().writeRows(resultSet, out, -1);
+
+		assertEquals("id,resume,photo,name\r\n-101,\"Says \"\"hi\"\"\",AQID,Smith\r\n,,,\r\n",
+				out.toString(StandardCharsets.UTF_8));
+		// LOBs are streamed rather than read as strings
+		verify(resultSet, never()).getString(2);
+		verify(resultSet, never()).getString(3);
+	}
+}
@@ -0,0 +1,46 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for continuation tokens with key columns which are not numbers.
+ * @author peobrie
+ *
+ */
+public class KeysetTokenTest {
+
+	@Test
+	public void testTimestampAndUuidKey() throws SQLException, IOException {
+		final Timestamp hired = Timestamp.valueOf("2024-01-31 09:30:00.123456");
+		final ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.getTimestamp("HIRED")).thenReturn(hired);
+		when(resultSet.getString("ID")).thenReturn("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+
+		final String token = KeysetToken.encode(new Object[] { KeysetToken.keyValue(resultSet, "HIRED", Types.TIMESTAMP),
+				KeysetToken.keyValue(resultSet, "ID", Types.OTHER) });
+		final Object[] after = KeysetToken.decode(token);
+
+		final PreparedStatement statement = mock(PreparedStatement.class);
+		KeysetToken.bind(statement, 1, after[0], Types.TIMESTAMP);
+		KeysetToken.bind(statement, 2, after[1], Types.OTHER);
+		verify(statement).setTimestamp(1, hired);
+		verify(statement).setObject(2, "3f2504e0-4f89-11d3-9a0c-0305e82c3301", Types.OTHER);
+	}
+
+	@Test
+	public void testInvalidKeyValue() throws SQLException {
+		final PreparedStatement statement = mock(PreparedStatement.class);
+		assertThrows(IllegalArgumentException.class, () -> KeysetToken.bind(statement, 1, "yesterday", Types.TIMESTAMP));
+		verifyNoInteractions(statement);
+	}
+}
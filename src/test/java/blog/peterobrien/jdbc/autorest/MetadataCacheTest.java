@@ -0,0 +1,133 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import oracle.dbtools.plugin.api.logging.Log;
+
+/**
+ * Unit tests for the MetadataCache confirming that dictionary queries are made once per object.
+ * @author peobrie
+ *
+ */
+public class MetadataCacheTest {
+	private Connection connection;
+	private DatabaseMetaData dbMetadata;
+	private MetadataCache metadataCache;
+	private ServiceDefinition sd;
+
+	@Before
+	public void setUp() throws SQLException {
+		connection = mock(Connection.class);
+		dbMetadata = mock(DatabaseMetaData.class);
+		when(connection.getMetaData()).thenReturn(dbMetadata);
+		when(connection.getSchema()).thenReturn("HR");
+		when(dbMetadata.getURL()).thenReturn("jdbc:test:hr");
+		when(dbMetadata.getDatabaseProductName()).thenReturn("Oracle");
+		metadataCache = new MetadataCache();
+
+		sd = new ServiceDefinition("/employees/", "HR", "EMPLOYEES", SupportedObjectType.TABLE, SupportedQueryType.COLLECTION);
+	}
+
+	@Test
+	public void testVisibleObjectLoadedOnce() throws SQLException {
+		final ResultSet tables = mock(ResultSet.class);
+		when(tables.next()).thenReturn(true);
+		when(tables.getString("TABLE_TYPE")).thenReturn("TABLE");
+		when(tables.getString("TABLE_SCHEM")).thenReturn("HR");
+		when(tables.getString("TABLE_NAME")).thenReturn("EMPLOYEES");
+		when(dbMetadata.getTables(isNull(), eq("HR"), eq("EMPLOYEES"), any())).thenReturn(tables);
+
+		final ResultSet pks = mock(ResultSet.class);
+		when(pks.next()).thenReturn(true, false);
+		when(pks.getString("COLUMN_NAME")).thenReturn("EMPLOYEE_ID");
+		when(dbMetadata.getPrimaryKeys(isNull(), eq("HR"), eq("EMPLOYEES"))).thenReturn(pks);
+
+		final ResultSet columns = mock(ResultSet.class);
+		when(columns.next()).thenReturn(true, false);
+		when(columns.getString("COLUMN_NAME")).thenReturn("EMPLOYEE_ID");
+		when(dbMetadata.getColumns(isNull(), eq("HR"), eq("EMPLOYEES"), isNull())).thenReturn(columns);
+
+		final AutoRESTJDBC first = new AutoRESTJDBC(connection, mock(Log.class), metadataCache);
+		final ObjectMetadata metadata = first.metadata(sd);
+		assertTrue(metadata.isVisible());
+		assertEquals("EMPLOYEE_ID", metadata.pkStructure.elements.get(0).columnName);
+		assertEquals(1, metadata.columns.size());
+		assertEquals("select * from HR.EMPLOYEES order by EMPLOYEE_ID offset ? rows fetch next ? rows only", metadata.templates.selectCollection);
+		assertEquals("select * from HR.EMPLOYEES where EMPLOYEE_ID = ?", metadata.templates.selectItem);
+		assertEquals("select * from HR.EMPLOYEES where (EMPLOYEE_ID > ?) order by EMPLOYEE_ID offset ? rows fetch next ? rows only", metadata.templates.selectCollectionAfter);
+		assertEquals("update HR.EMPLOYEES set FIRST_NAME = ?, LAST_NAME = ? where EMPLOYEE_ID = ?", metadata.templates.update(List.of("FIRST_NAME", "LAST_NAME")));
+		assertSame(metadata.templates.update(List.of("FIRST_NAME", "LAST_NAME")), metadata.templates.update(List.of("FIRST_NAME", "LAST_NAME")));
+
+		final List<String> fields = metadata.columns(List.of("employee_id", "EMPLOYEE_ID"));
+		assertEquals(List.of("EMPLOYEE_ID"), fields);
+		assertEquals("select EMPLOYEE_ID from HR.EMPLOYEES where EMPLOYEE_ID = ?", metadata.templates.select(fields).item);
+		assertSame(metadata.templates.select(fields), metadata.templates.select(List.of("EMPLOYEE_ID")));
+		assertThrows(IllegalArgumentException.class, () -> metadata.columns(List.of("SALARY")));
+
+		final AutoRESTJDBC second = new AutoRESTJDBC(connection, mock(Log.class), metadataCache);
+		assertSame(metadata, second.metadata(sd));
+		verify(dbMetadata, times(1)).getTables(any(), any(), any(), any());
+		verify(dbMetadata, times(1)).getPrimaryKeys(any(), any(), any());
+
+		metadataCache.invalidate("HR", "EMPLOYEES");
+		assertNull(metadataCache.get("jdbc:test:hr", "HR", sd));
+	}
+
+	@Test
+	public void testColumnsOfObjectFound() throws SQLException {
+		final ServiceDefinition unowned = new ServiceDefinition("/job_history/", null, "JOB_HISTORY", SupportedObjectType.TABLE,
+				SupportedQueryType.COLLECTION);
+		final ResultSet tables = mock(ResultSet.class);
+		when(tables.next()).thenReturn(true);
+		when(tables.getString("TABLE_TYPE")).thenReturn("TABLE");
+		when(tables.getString("TABLE_SCHEM")).thenReturn("HR");
+		when(tables.getString("TABLE_NAME")).thenReturn("JOB_HISTORY");
+		when(dbMetadata.getTables(isNull(), isNull(), eq("JOB_HISTORY"), any())).thenReturn(tables);
+		when(dbMetadata.getSearchStringEscape()).thenReturn("\\");
+
+		final ResultSet pks = mock(ResultSet.class);
+		when(dbMetadata.getPrimaryKeys(isNull(), eq("HR"), eq("JOB_HISTORY"))).thenReturn(pks);
+
+		// A table matching the unescaped pattern and the same table in another schema are left out
+		final ResultSet columns = mock(ResultSet.class);
+		when(columns.next()).thenReturn(true, true, true, false);
+		when(columns.getString("TABLE_SCHEM")).thenReturn("HR", "HR", "SCOTT");
+		when(columns.getString("TABLE_NAME")).thenReturn("JOB_HISTORY", "JOBXHISTORY");
+		when(columns.getString("COLUMN_NAME")).thenReturn("EMPLOYEE_ID");
+		when(dbMetadata.getColumns(isNull(), eq("HR"), eq("JOB\\_HISTORY"), isNull())).thenReturn(columns);
+
+		final ObjectMetadata metadata = new AutoRESTJDBC(connection, mock(Log.class), metadataCache).metadata(unowned);
+		assertTrue(metadata.isVisible());
+		assertEquals(1, metadata.columns.size());
+		verify(dbMetadata).getPrimaryKeys(isNull(), eq("HR"), eq("JOB_HISTORY"));
+	}
+
+	@Test
+	public void testNotVisibleObjectCached() throws SQLException {
+		final ResultSet tables = mock(ResultSet.class);
+		when(tables.next()).thenReturn(false);
+		when(dbMetadata.getTables(any(), any(), any(), any())).thenReturn(tables);
+
+		final AutoRESTJDBC autoREST = new AutoRESTJDBC(connection, mock(Log.class), metadataCache);
+		assertNull(autoREST.service(sd, SupportedAction.GET, null));
+		assertNull(autoREST.service(sd, SupportedAction.GET, null));
+		verify(dbMetadata, times(1)).getTables(any(), any(), any(), any());
+		assertSame(ObjectMetadata.NOT_VISIBLE, metadataCache.get("jdbc:test:hr", "HR", sd));
+	}
+}
@@ -45,11 +45,7 @@ public class MySQLJDBCTest {
 
 	@Test
 	public void testGETCollection() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
-		sd.queryType = SupportedQueryType.COLLECTION;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, SupportedQueryType.COLLECTION);
 		
 		final Map<String, Object> paramMap = new HashMap<String, Object>();
 		paramMap.put("limit", 25);
@@ -79,10 +75,7 @@ public class MySQLJDBCTest {
 
 	@Test
 	public void testGETView() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "sales_by_film_category";
-		sd.path = "sakila/sammy/sales_by_film_category/";
-		sd.type = SupportedObjectType.VIEW;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/sales_by_film_category/", null, "sales_by_film_category", SupportedObjectType.VIEW, null);
 		
 		final Map<String, Object> paramMap = new HashMap<String, Object>();
 		paramMap.put("limit", 25);
@@ -117,11 +110,7 @@ public class MySQLJDBCTest {
 
 	@Test
 	public void testGETItem() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
-		sd.queryType = SupportedQueryType.ITEM;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, SupportedQueryType.ITEM);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
@@ -147,10 +136,7 @@ public class MySQLJDBCTest {
 
 	@Test
 	public void testGETInvalidIdentifier() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actors";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actors", SupportedObjectType.TABLE, null);
 		
 		final Map<String, Object> paramMap = new HashMap<String, Object>();
 		paramMap.put("limit", 25);
@@ -168,10 +154,7 @@ public class MySQLJDBCTest {
 
 	@Test
 	public void testPOST() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, null);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
@@ -199,10 +182,7 @@ public class MySQLJDBCTest {
 	
 	@Test
 	public void testDELETE() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, null);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
@@ -0,0 +1,76 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import oracle.dbtools.plugin.api.logging.Log;
+
+/**
+ * Unit tests for reloading OpenAPI documents when the file changes.
+ * @author peobrie
+ *
+ */
+public class OpenAPICacheTest {
+	private static final String DOCUMENT = "openapi: 3.0.1\ninfo:\n  title: %s\n  version: '1'\npaths: {}\n";
+
+	private final AtomicLong time = new AtomicLong();
+	private final Log log = mock(Log.class);
+	private OpenAPICache openAPICache;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("autorest", ".yaml");
+		Files.writeString(file, String.format(DOCUMENT, "first"));
+		// Reloads run on the calling thread so that the test can observe them
+		openAPICache = new OpenAPICache(log, time::get, Runnable::run);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private String title() {
+		return openAPICache.getAutoRESTDocument(file.toString()).openAPI.getInfo().getTitle();
+	}
+
+	@Test
+	public void testUnchangedDocumentKept() {
+		final AutoRESTDocument document = openAPICache.getAutoRESTDocument(file.toString());
+		time.addAndGet(TimeUnit.SECONDS.toNanos(OpenAPICache.CHECK_SECONDS + 1));
+		openAPICache.getAutoRESTDocument(file.toString());
+		assertSame(document, openAPICache.getAutoRESTDocument(file.toString()));
+	}
+
+	@Test
+	public void testChangedDocumentReloaded() throws IOException {
+		assertEquals("first", title());
+		Files.writeString(file, String.format(DOCUMENT, "second"));
+		assertEquals("Changes are only checked for after the interval", "first", title());
+
+		time.addAndGet(TimeUnit.SECONDS.toNanos(OpenAPICache.CHECK_SECONDS + 1));
+		title();
+		assertEquals("second", title());
+	}
+
+	@Test
+	public void testInvalidDocumentNotReloaded() throws IOException {
+		assertEquals("first", title());
+		Files.writeString(file, "not: [an openapi document");
+		time.addAndGet(TimeUnit.SECONDS.toNanos(OpenAPICache.CHECK_SECONDS + 1));
+		title();
+		assertEquals("first", title());
+		verify(log).warning(startsWith(file + " was not reloaded: "));
+	}
+}
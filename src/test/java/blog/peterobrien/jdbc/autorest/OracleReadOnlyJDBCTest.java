@@ -47,12 +47,7 @@ public class OracleReadOnlyJDBCTest {
 
 	@Test
 	public void testGETCollection() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.owner = "HR";
-		sd.identifier = "EMPLOYEES";
-		sd.path = "oracle/hr/employees/";
-		sd.type = SupportedObjectType.TABLE;
-		sd.queryType = SupportedQueryType.COLLECTION;
+		final ServiceDefinition sd = new ServiceDefinition("oracle/hr/employees/", "HR", "EMPLOYEES", SupportedObjectType.TABLE, SupportedQueryType.COLLECTION);
 		
 		final Map<String, Object> paramMap = new HashMap<String, Object>();
 		paramMap.put("limit", 25);
@@ -81,11 +76,7 @@ public class OracleReadOnlyJDBCTest {
 
 	@Test
 	public void testGETView() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.owner = "HR";
-		sd.identifier = "EMP_DETAILS_VIEW";
-		sd.path = "oracle/hr/empdetails/";
-		sd.type = SupportedObjectType.VIEW;
+		final ServiceDefinition sd = new ServiceDefinition("oracle/hr/empdetails/", "HR", "EMP_DETAILS_VIEW", SupportedObjectType.VIEW, null);
 		
 		final Map<String, Object> paramMap = new HashMap<String, Object>();
 		paramMap.put("limit", 25);
@@ -115,12 +106,7 @@ public class OracleReadOnlyJDBCTest {
 
 	@Test
 	public void testGETItem() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.owner = "HR";
-		sd.identifier = "EMPLOYEES";
-		sd.path = "oracle/hr/employees/";
-		sd.type = SupportedObjectType.TABLE;
-		sd.queryType = SupportedQueryType.ITEM;
+		final ServiceDefinition sd = new ServiceDefinition("oracle/hr/employees/", "HR", "EMPLOYEES", SupportedObjectType.TABLE, SupportedQueryType.ITEM);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
@@ -146,10 +132,7 @@ public class OracleReadOnlyJDBCTest {
 
 	@Test
 	public void testGETInvalidIdentifier() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actors";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actors", SupportedObjectType.TABLE, null);
 		
 		final Map<String, Object> paramMap = new HashMap<String, Object>();
 		paramMap.put("limit", 25);
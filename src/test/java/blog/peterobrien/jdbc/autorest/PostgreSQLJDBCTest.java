@@ -46,10 +46,7 @@ public class PostgreSQLJDBCTest {
 
 	@Test
 	public void testGETCollection() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, null);
 		
 		final Map<String, Object> values = new HashMap<String, Object>();
 		values.put("limit", 25);
@@ -79,10 +76,7 @@ public class PostgreSQLJDBCTest {
 
 	@Test
 	public void testGETView() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "sales_by_film_category";
-		sd.path = "sakila/sammy/sales_by_film_category/";
-		sd.type = SupportedObjectType.VIEW;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/sales_by_film_category/", null, "sales_by_film_category", SupportedObjectType.VIEW, null);
 		
 		final Map<String, Object> values = new HashMap<String, Object>();
 		values.put("limit", 25);
@@ -117,11 +111,7 @@ public class PostgreSQLJDBCTest {
 
 	@Test
 	public void testGETItem() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
-		sd.queryType = SupportedQueryType.ITEM;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, SupportedQueryType.ITEM);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
@@ -147,10 +137,7 @@ public class PostgreSQLJDBCTest {
 
 	@Test
 	public void testGETInvalidIdentifier() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actors";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actors", SupportedObjectType.TABLE, null);
 		
 		final Map<String, Object> values = new HashMap<String, Object>();
 		values.put("limit", 25);
@@ -168,10 +155,7 @@ public class PostgreSQLJDBCTest {
 
 	@Test
 	public void testPOST() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, null);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
@@ -199,10 +183,7 @@ public class PostgreSQLJDBCTest {
 	
 	@Test
 	public void testDELETE() {
-		ServiceDefinition sd = new ServiceDefinition();
-		sd.identifier = "actor";
-		sd.path = "sakila/sammy/actors/";
-		sd.type = SupportedObjectType.TABLE;
+		final ServiceDefinition sd = new ServiceDefinition("sakila/sammy/actors/", null, "actor", SupportedObjectType.TABLE, null);
 		
 		try (Connection connection = DriverManager
                 .getConnection(JDBC_URL,
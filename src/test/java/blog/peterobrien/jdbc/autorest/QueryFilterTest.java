@@ -0,0 +1,59 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for compiling q filter objects to conditions with bind variables.
+ * @author peobrie
+ *
+ */
+public class QueryFilterTest {
+	private ObjectMetadata metadata;
+
+	@Before
+	public void setUp() throws SQLException {
+		final List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+		for (String name : List.of("EMPLOYEE_ID", "JOB_ID", "SALARY")) {
+			final ResultSet resultSet = mock(ResultSet.class);
+			when(resultSet.getString("COLUMN_NAME")).thenReturn(name);
+			columns.add(new ColumnMetadata(resultSet));
+		}
+		metadata = new ObjectMetadata("TABLE", "EMPLOYEES", null, columns, null);
+	}
+
+	@Test
+	public void testCompile() {
+		final QueryFilter filter = QueryFilter.compile(
+				"{\"salary\":{\"$gt\":1000},\"$or\":[{\"JOB_ID\":\"IT_PROG\"},{\"JOB_ID\":{\"$like\":\"SA%\"}}]}", metadata);
+		assertEquals("SALARY > ? and (JOB_ID = ? or JOB_ID like ?)", filter.condition);
+		assertEquals(List.of(1000L, "IT_PROG", "SA%"), filter.values);
+
+		final QueryFilter in = QueryFilter.compile("{\"EMPLOYEE_ID\":{\"$in\":[100,101]},\"JOB_ID\":{\"$null\":null}}", metadata);
+		assertEquals("EMPLOYEE_ID in (?, ?) and JOB_ID is null", in.condition);
+		assertEquals(List.of(100L, 101L), in.values);
+	}
+
+	@Test
+	public void testSameStructureSameCondition() {
+		assertEquals(QueryFilter.compile("{\"SALARY\":{\"$gte\":1}}", metadata).condition,
+				QueryFilter.compile("{\"SALARY\":{\"$gte\":2000}}", metadata).condition);
+	}
+
+	@Test
+	public void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> QueryFilter.compile("{\"COMMISSION\":1}", metadata));
+		assertThrows(IllegalArgumentException.class, () -> QueryFilter.compile("{\"SALARY\":{\"$regex\":\"x\"}}", metadata));
+		assertThrows(IllegalArgumentException.class, () -> QueryFilter.compile("{\"$or\":{}}", metadata));
+		assertThrows(IllegalArgumentException.class, () -> QueryFilter.compile("not json", metadata));
+	}
+}
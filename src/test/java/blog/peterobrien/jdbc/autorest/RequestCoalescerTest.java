@@ -0,0 +1,166 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for coalescing identical requests in flight.
+ * @author peobrie
+ *
+ */
+public class RequestCoalescerTest {
+
+	private static CapturedResponse render(final String body) throws IOException {
+		final CapturedResponse.Capture capture = new CapturedResponse.Capture(mock(HttpServletResponse.class));
+		capture.setContentType("application/json");
+		capture.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+		return capture.captured();
+	}
+
+	@Test
+	public void testFollowersShareLeaderResponse() throws Exception {
+		final RequestCoalescer coalescer = new RequestCoalescer();
+		final CountDownLatch followersWaiting = new CountDownLatch(1);
+		final AtomicInteger rendered = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final Future<CapturedResponse> leader = executor.submit(() -> coalescer.execute("key", 10_000, () -> {
+				// Hold the leader until the followers have joined
+				followersWaiting.await(10, TimeUnit.SECONDS);
+				rendered.incrementAndGet();
+				return render("{\"id\":101}");
+			}));
+			while (coalescer.inFlight() == 0) {
+				Thread.onSpinWait();
+			}
+			final List<Future<CapturedResponse>> followers = new ArrayList<Future<CapturedResponse>>();
+			for (int i = 0; i < 3; i++) {
+				followers.add(executor.submit(() -> coalescer.execute("key", 10_000, () -> {
+					rendered.incrementAndGet();
+					return render("{}");
+				})));
+			}
+			while (coalescer.followers.sum() < 3) {
+				Thread.onSpinWait();
+			}
+			followersWaiting.countDown();
+
+			final CapturedResponse response = leader.get(10, TimeUnit.SECONDS);
+			for (Future<CapturedResponse> follower : followers) {
+				assertSame(response, follower.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, rendered.get());
+			assertEquals(0.75, coalescer.ratio(), 0.001);
+			assertEquals(0, coalescer.inFlight());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFollowerTimeout() throws Exception {
+		final RequestCoalescer coalescer = new RequestCoalescer();
+		final CountDownLatch leaderFinish = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<CapturedResponse> leader = executor.submit(() -> coalescer.execute("key", 10_000, () -> {
+				leaderFinish.await(10, TimeUnit.SECONDS);
+				return render("{}");
+			}));
+			while (coalescer.inFlight() == 0) {
+				Thread.onSpinWait();
+			}
+			// The follower gives up on the leader and runs on its own
+			assertNull(coalescer.execute("key", 10, () -> render("{}")));
+			leaderFinish.countDown();
+			assertNotNull(leader.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static HttpServletResponse response(final ByteArrayOutputStream out) throws IOException {
+		final HttpServletResponse response = mock(HttpServletResponse.class);
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(final int b) {
+				out.write(b);
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(final WriteListener writeListener) {
+			}
+		});
+		return response;
+	}
+
+	@Test
+	public void testLargeResponseStreamed() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HttpServletResponse response = response(out);
+		final CapturedResponse.Capture capture = new CapturedResponse.Capture(response);
+		capture.setContentType("application/json");
+		capture.setHeader("ETag", "\"1\"");
+		final byte[] chunk = new byte[CapturedResponse.MAX_BODY_BYTES / 2 + 1];
+		capture.getOutputStream().write(chunk);
+		verify(response, never()).getOutputStream();
+
+		capture.getOutputStream().write(chunk);
+		capture.setHeader("Late", "ignored by a committed response");
+		assertNull(capture.captured());
+		verify(response).setContentType("application/json");
+		verify(response).addHeader("ETag", "\"1\"");
+		verify(response).setHeader("Late", "ignored by a committed response");
+		assertEquals(chunk.length * 2, out.size());
+	}
+
+	@Test
+	public void testReplay() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final HttpServletResponse response = response(out);
+		render("{\"id\":101}").replay(response);
+		verify(response).setContentType("application/json");
+		assertEquals("{\"id\":101}", out.toString(StandardCharsets.UTF_8));
+
+		final CapturedResponse.Capture headers = new CapturedResponse.Capture(mock(HttpServletResponse.class));
+		headers.setIntHeader("Retry-After", 120);
+		headers.setIntHeader("Retry-After", 60);
+		headers.addDateHeader("Last-Modified", 0);
+		headers.setLocale(Locale.FRANCE);
+		final HttpServletResponse replayed = mock(HttpServletResponse.class);
+		headers.captured().replay(replayed);
+		verify(replayed).addHeader("Retry-After", "60");
+		verify(replayed, never()).addHeader("Retry-After", "120");
+		verify(replayed).addHeader("Last-Modified", "Thu, 01 Jan 1970 00:00:00 GMT");
+		verify(replayed).setLocale(Locale.FRANCE);
+
+		final CapturedResponse.Capture capture = new CapturedResponse.Capture(mock(HttpServletResponse.class));
+		capture.sendError(HttpServletResponse.SC_NOT_FOUND);
+		capture.captured().replay(response);
+		verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+	}
+}
@@ -0,0 +1,41 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Unit tests for the ResourceScope.
+ * @author peobrie
+ *
+ */
+public class ResourceScopeTest {
+
+	@Test
+	public void testCloseInReverseOrder() throws SQLException {
+		final long statementsOpen = ResourceScope.openStatements();
+		final long resultSetsOpen = ResourceScope.openResultSets();
+		final PreparedStatement statement = mock(PreparedStatement.class);
+		final ResultSet resultSet = mock(ResultSet.class);
+
+		try (ResourceScope scope = new ResourceScope()) {
+			assertSame(statement, scope.register(statement));
+			assertSame(resultSet, scope.register(resultSet));
+			assertEquals(statementsOpen + 1, ResourceScope.openStatements());
+			assertEquals(resultSetsOpen + 1, ResourceScope.openResultSets());
+		}
+
+		final InOrder order = inOrder(resultSet, statement);
+		order.verify(resultSet).close();
+		order.verify(statement).close();
+		assertEquals(statementsOpen, ResourceScope.openStatements());
+		assertEquals(resultSetsOpen, ResourceScope.openResultSets());
+	}
+}
@@ -0,0 +1,112 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.media.IntegerSchema;
+import io.swagger.v3.oas.models.media.NumberSchema;
+import io.swagger.v3.oas.models.media.StringSchema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+
+/**
+ * Unit tests for the RouteMatcher.
+ * @author peobrie
+ *
+ */
+public class RouteMatcherTest {
+	private RouteMatcher routes;
+
+	@Before
+	public void setUp() {
+		final OpenAPI openAPI = new OpenAPI();
+		openAPI.path("/employees/", new PathItem());
+		openAPI.path("/employees/{id}", new PathItem().addParametersItem(new Parameter().name("id").in("path").schema(new IntegerSchema())));
+		openAPI.path("/employees/manager", new PathItem());
+		openAPI.path("/departments/{code}/employees/{salary}", new PathItem()
+				.addParametersItem(new Parameter().name("code").in("path").schema(new StringSchema()))
+				.addParametersItem(new Parameter().name("salary").in("path").schema(new NumberSchema())));
+		routes = new RouteMatcher(openAPI, new ArrayList<String>());
+	}
+
+	@Test
+	public void testExactMatch() {
+		final RouteMatch match = routes.match("/employees/");
+		assertEquals("/employees/", match.route.path);
+		assertFalse(match.hasParameters());
+	}
+
+	@Test
+	public void testLiteralBeforeParameter() {
+		assertEquals("/employees/manager", routes.match("/employees/manager").route.path);
+	}
+
+	@Test
+	public void testTypedParameters() {
+		RouteMatch match = routes.match("/employees/101");
+		assertEquals("/employees/{id}", match.route.path);
+		assertEquals(Integer.valueOf(101), match.values[0]);
+
+		match = routes.match("/departments/IT/employees/1200.50");
+		assertEquals("/departments/{code}/employees/{salary}", match.route.path);
+		assertEquals("IT", match.values[0]);
+		assertEquals(new BigDecimal("1200.50"), match.values[1]);
+	}
+
+	@Test
+	public void testNoMatch() {
+		assertNull(routes.match("/employees/101/extra"));
+		assertNull(routes.match("/departments/IT"));
+		assertNull(routes.match("/employees/abc"));
+		// A prefix of a template is not a match for the template
+		assertNull(routes.match("/departments"));
+	}
+
+	@Test
+	public void testServiceDefinitions() {
+		final OpenAPI openAPI = new OpenAPI();
+		final PathItem collectionPathItem = new PathItem()
+				.get(new Operation())
+				.post(autorest(Map.of("owner", "HR", "identifier", "EMPLOYEES", "type", "TABLE")));
+		collectionPathItem.addExtension("x-autorest", Map.of("identifier", "EMP_DETAILS_VIEW", "type", "view"));
+		openAPI.path("/employees/", collectionPathItem);
+		final PathItem itemPathItem = new PathItem()
+				.get(new Operation())
+				.delete(autorest(Map.of("type", "table")))
+				.addParametersItem(new Parameter().name("id").in("path").schema(new IntegerSchema()));
+		itemPathItem.addExtension("x-autorest", Map.of("identifier", "EMPLOYEES", "type", "synonym"));
+		openAPI.path("/employees/{id}", itemPathItem);
+		final List<String> problems = new ArrayList<String>();
+		final RouteMatcher matcher = new RouteMatcher(openAPI, problems);
+
+		final Route collection = matcher.match("/employees/").route;
+		final ServiceDefinition get = collection.service("GET");
+		assertEquals("EMP_DETAILS_VIEW", get.identifier);
+		assertEquals(SupportedObjectType.VIEW, get.type);
+		assertEquals(SupportedQueryType.COLLECTION, get.queryType);
+		final ServiceDefinition post = collection.service("POST");
+		assertEquals("HR", post.owner);
+		assertEquals(SupportedObjectType.TABLE, post.type);
+		assertNull(collection.service("PUT"));
+
+		final Route item = matcher.match("/employees/7").route;
+		assertNull(item.service("GET"));
+		assertNull(item.service("DELETE"));
+		assertEquals(2, problems.size());
+	}
+
+	private static Operation autorest(final Map<String, String> extension) {
+		final Operation operation = new Operation();
+		operation.addExtension("x-autorest", extension);
+		return operation;
+	}
+}
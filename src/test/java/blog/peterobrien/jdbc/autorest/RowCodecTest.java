@@ -0,0 +1,113 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Unit tests for writing columns with the getter for their SQL type.
+ * @author peobrie
+ *
+ */
+public class RowCodecTest {
+
+	private static ResultSetMetaData metaData(final Object[][] columns) throws SQLException {
+		final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+		when(metaData.getColumnCount()).thenReturn(columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			when(metaData.getColumnLabel(i + 1)).thenReturn((String) columns[i][0]);
+			when(metaData.getColumnType(i + 1)).thenReturn((Integer) columns[i][1]);
+			when(metaData.getColumnTypeName(i + 1)).thenReturn((String) columns[i][2]);
+			when(metaData.getPrecision(i + 1)).thenReturn((Integer) columns[i][3]);
+			when(metaData.isSigned(i + 1)).thenReturn(true);
+		}
+		return metaData;
+	}
+
+	@Test
+	public void testWrite() throws SQLException, IOException {
+		final ResultSetMetaData metaData = metaData(new Object[][] {
+			{ "id", Types.NUMERIC, "NUMBER", 6 },
+			{ "salary", Types.NUMERIC, "NUMBER", 0 },
+			{ "name", Types.VARCHAR, "VARCHAR2", 20 },
+			{ "manager_id", Types.INTEGER, "INT4", 10 },
+			{ "hired", ColumnCodec.ORACLE_TIMESTAMPTZ, "TIMESTAMP WITH TIME ZONE", 0 },
+			{ "key", Types.OTHER, "uuid", 0 },
+			{ "profile", Types.OTHER, "jsonb", 0 },
+		});
+		final ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.getMetaData()).thenReturn(metaData);
+		when(resultSet.getLong(1)).thenReturn(101L);
+		when(resultSet.getBigDecimal(2)).thenReturn(new BigDecimal("2400.50"));
+		when(resultSet.getString(3)).thenReturn("Smith");
+		when(resultSet.getInt(4)).thenReturn(0);
+		when(resultSet.wasNull()).thenReturn(false, true);
+		when(resultSet.getObject(5, OffsetDateTime.class))
+				.thenReturn(OffsetDateTime.of(2024, 1, 31, 9, 30, 0, 0, ZoneOffset.ofHours(1)));
+		when(resultSet.getString(6)).thenReturn("3f1c7a52-6d7e-4b0e-9c1a-0d3b2f4e5a6b");
+		when(resultSet.getString(7)).thenReturn("{\"skills\": [\"sql\"]}");
+
+		// The plan is kept with the queries of the select list
+		final SqlTemplates.Select select = new SqlTemplates(new ServiceDefinition("hr/employees/", null, "employees",
+				SupportedObjectType.TABLE, SupportedQueryType.COLLECTION), null, List.of(), SqlDialects.ORACLE).select(null);
+		final RowCodec codec = select.rowCodec(metaData);
+		assertSame("Plan not kept with the select", codec, select.rowCodec(metaData));
+		verify(metaData, times(1)).getColumnCount();
+
+		final StringWriter json = new StringWriter();
+		try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(json)) {
+			generator.writeStartObject();
+			codec.write(resultSet, generator);
+			generator.writeEndObject();
+		}
+		assertEquals("{\"id\":101,\"salary\":2400.50,\"name\":\"Smith\",\"manager_id\":null,"
+				+ "\"hired\":\"2024-01-31T09:30:00+01:00\",\"key\":\"3f1c7a52-6d7e-4b0e-9c1a-0d3b2f4e5a6b\","
+				+ "\"profile\":{\"skills\": [\"sql\"]}}", json.toString());
+		verify(resultSet, never()).getObject(anyInt());
+	}
+
+	@Test
+	public void testLobs() throws SQLException, IOException {
+		final ResultSetMetaData metaData = metaData(new Object[][] {
+			{ "resume", Types.CLOB, "CLOB", 0 },
+			{ "photo", Types.BINARY, "bytea", 0 },
+		});
+		final ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.getCharacterStream(1)).thenReturn(new StringReader("x".repeat(10000)));
+		when(resultSet.getBinaryStream(2)).thenReturn(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+		final RowCodec codec = RowCodec.of(metaData);
+
+		final StringWriter json = new StringWriter();
+		try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(json)) {
+			generator.writeStartObject();
+			codec.write(resultSet, generator);
+			generator.writeEndObject();
+			generator.writeStartObject();
+			codec.write(resultSet, generator, "https://localhost/ords/mydb/autorest/resources/101");
+			generator.writeEndObject();
+		}
+		assertEquals("{\"resume\":\"" + "x".repeat(10000) + "\",\"photo\":\"AQID\"} "
+				+ "{\"resume\":{\"href\":\"https://localhost/ords/mydb/autorest/resources/101/_lob/resume\"},"
+				+ "\"photo\":{\"href\":\"https://localhost/ords/mydb/autorest/resources/101/_lob/photo\"}}",
+				json.toString());
+		verify(resultSet, never()).getString(anyInt());
+		verify(resultSet, never()).getBytes(anyInt());
+	}
+}
@@ -0,0 +1,100 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the detection of the SqlDialect from the database product name.
+ * @author peobrie
+ *
+ */
+public class SqlDialectsTest {
+
+	private static SqlDialect detect(final String productName) throws SQLException {
+		final DatabaseMetaData dbMetadata = mock(DatabaseMetaData.class);
+		when(dbMetadata.getDatabaseProductName()).thenReturn(productName);
+		return SqlDialects.detect(dbMetadata);
+	}
+
+	@Test
+	public void testDetect() throws SQLException {
+		assertSame(SqlDialects.ORACLE, detect("Oracle"));
+		assertSame(SqlDialects.SQL_SERVER, detect("Microsoft SQL Server"));
+		assertSame(SqlDialects.POSTGRESQL, detect("PostgreSQL"));
+		assertSame(SqlDialects.MYSQL, detect("MySQL"));
+		assertSame(SqlDialects.DB2, detect("DB2/LINUXX8664"));
+		assertSame(SqlDialects.STANDARD, detect("H2"));
+	}
+
+	@Test
+	public void testPaginate() {
+		assertEquals("select * from t offset ? rows fetch next ? rows only", SqlDialects.ORACLE.paginate("select * from t"));
+		assertEquals("select * from t limit ? offset ?", SqlDialects.POSTGRESQL.paginate("select * from t"));
+	}
+
+	@Test
+	public void testQuote() {
+		assertEquals("\"FIRST_NAME\"", SqlDialects.ORACLE.quote("FIRST_NAME"));
+		assertEquals("[first name]", SqlDialects.SQL_SERVER.quote("first name"));
+		assertEquals("`first``name`", SqlDialects.MYSQL.quote("first`name"));
+	}
+
+	@Test
+	public void testUpsert() {
+		final List<String> keys = List.of("id");
+		final List<String> columns = List.of("id", "name");
+		final List<String> types = List.of("INTEGER", "VARCHAR(20)");
+		assertEquals("merge into hr.emp t using (select ? id, ? name from dual) s on (t.id = s.id)"
+				+ " when matched then update set t.name = s.name"
+				+ " when not matched then insert (id, name) values (s.id, s.name)",
+				SqlDialects.ORACLE.upsert("hr.emp", keys, columns, types));
+		assertEquals("merge into hr.emp with (holdlock) t using (values (?, ?)) s (id, name) on (t.id = s.id)"
+				+ " when matched then update set t.name = s.name"
+				+ " when not matched then insert (id, name) values (s.id, s.name) output inserted.*;",
+				SqlDialects.SQL_SERVER.upsert("hr.emp", keys, columns, types));
+		assertEquals("insert into hr.emp (id, name) values (?, ?) on conflict (id) do update set name = excluded.name"
+				+ " returning *", SqlDialects.POSTGRESQL.upsert("hr.emp", keys, columns, types));
+		assertEquals("merge into hr.emp t using (values (cast(? as INTEGER), cast(? as VARCHAR(20)))) s (id, name)"
+				+ " on (t.id = s.id) when matched then update set t.name = s.name"
+				+ " when not matched then insert (id, name) values (s.id, s.name)",
+				SqlDialects.DB2.upsert("hr.emp", keys, columns, types));
+
+		// Only key columns: the row is still output for an existing key, except by Oracle which can not update the
+		// columns it matches on and queries the row after the merge
+		final List<String> keyTypes = List.of("INTEGER");
+		assertEquals("insert into hr.emp (id) values (?) on duplicate key update id = id",
+				SqlDialects.MYSQL.upsert("hr.emp", keys, keys, keyTypes));
+		assertEquals("merge into hr.emp with (holdlock) t using (values (?)) s (id) on (t.id = s.id)"
+				+ " when matched then update set t.id = s.id"
+				+ " when not matched then insert (id) values (s.id) output inserted.*;",
+				SqlDialects.SQL_SERVER.upsert("hr.emp", keys, keys, keyTypes));
+		assertEquals("merge into hr.emp t using (select ? id from dual) s on (t.id = s.id)"
+				+ " when not matched then insert (id) values (s.id)",
+				SqlDialects.ORACLE.upsert("hr.emp", keys, keys, keyTypes));
+		assertEquals("merge into hr.emp t using (values (cast(? as INTEGER))) s (id) on (t.id = s.id)"
+				+ " when matched then update set t.id = s.id"
+				+ " when not matched then insert (id) values (s.id)",
+				SqlDialects.DB2.upsert("hr.emp", keys, keys, keyTypes));
+	}
+
+	@Test
+	public void testInsertReturning() {
+		final List<String> columns = List.of("id", "name");
+		assertEquals("insert into hr.emp (id, name) values (?, ?) returning *",
+				SqlDialects.POSTGRESQL.insertReturning("hr.emp", columns));
+		assertEquals("insert into hr.emp (id, name) output inserted.* values (?, ?)",
+				SqlDialects.SQL_SERVER.insertReturning("hr.emp", columns));
+		assertEquals("select * from final table (insert into hr.emp (id, name) values (?, ?))",
+				SqlDialects.DB2.insertReturning("hr.emp", columns));
+		// Oracle requests every column as a generated key and MySQL builds the row from the bound values
+		assertNull(SqlDialects.ORACLE.insertReturning("hr.emp", columns));
+		assertTrue(SqlDialects.MYSQL.insertedRowFromValues());
+	}
+}
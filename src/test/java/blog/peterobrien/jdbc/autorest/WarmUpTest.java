@@ -0,0 +1,108 @@
+package blog.peterobrien.jdbc.autorest;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import oracle.dbtools.plugin.api.logging.Log;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.PathItem.HttpMethod;
+
+/**
+ * Unit tests for validating x-autorest resources before the first request.
+ * @author peobrie
+ *
+ */
+public class WarmUpTest {
+
+	private static AutoRESTDocument document() {
+		final OpenAPI openAPI = new OpenAPI();
+		final PathItem employees = new PathItem();
+		employees.addExtension("x-autorest", Map.of("identifier", "employees", "type", "table"));
+		employees.operation(HttpMethod.GET, new Operation());
+		openAPI.path("/employees/", employees);
+		final PathItem missing = new PathItem();
+		missing.addExtension("x-autorest", Map.of("owner", "hr", "identifier", "missing", "type", "view"));
+		missing.operation(HttpMethod.GET, new Operation());
+		openAPI.path("/missing/", missing);
+		return new AutoRESTDocument(openAPI);
+	}
+
+	@Test
+	public void testWarmUp() throws IOException {
+		final AutoRESTJDBC autoRESTJDBC = mock(AutoRESTJDBC.class);
+		when(autoRESTJDBC.prime(any(ServiceDefinition.class))).thenReturn(null);
+		when(autoRESTJDBC.prime(argThat(sd -> sd.identifier.equals("missing")))).thenReturn("VIEW is not visible");
+		final AutoRESTDocument document = document();
+		final Log log = mock(Log.class);
+		final WarmUp warmUp = new WarmUp(log);
+		assertNull(warmUp.summary(autoRESTJDBC, document));
+
+		// A readiness check with no time left takes no resources
+		final WarmUpSummary summary = warmUp.warmUp(autoRESTJDBC, document, 0);
+		assertFalse(summary.isFinished());
+		assertFalse(summary.isHealthy());
+		verify(autoRESTJDBC, never()).prime(any(ServiceDefinition.class));
+
+		assertSame(summary, warmUp.warmUp(autoRESTJDBC, document, WarmUp.SLICE_MILLIS));
+		assertTrue(summary.isFinished());
+		assertFalse(summary.isHealthy());
+		// The warm-up runs once for the pool, database user and document
+		assertSame(summary, warmUp.warmUp(autoRESTJDBC, document, WarmUp.SLICE_MILLIS));
+		verify(autoRESTJDBC, times(2)).prime(any(ServiceDefinition.class));
+		verify(log).info(summary.toString());
+
+		final StringWriter json = new StringWriter();
+		try (JsonGenerator generator = new JsonFactory().createGenerator(json)) {
+			summary.write(generator);
+		}
+		assertTrue(json.toString(), json.toString().startsWith("{\"resources\":2,\"pending\":0,"));
+		assertTrue(json.toString(), json.toString().contains(
+				"\"broken\":[{\"path\":\"/missing/\",\"object\":\"hr.missing\",\"problem\":\"VIEW is not visible\"}]"));
+	}
+
+	@Test
+	public void testConcurrentReadinessChecksDoNotWait() throws InterruptedException, ExecutionException {
+		final CountDownLatch priming = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AutoRESTJDBC autoRESTJDBC = mock(AutoRESTJDBC.class);
+		when(autoRESTJDBC.prime(any(ServiceDefinition.class))).thenReturn(null);
+		when(autoRESTJDBC.prime(argThat(sd -> sd.identifier.equals("employees")))).thenAnswer(invocation -> {
+			priming.countDown();
+			release.await();
+			return null;
+		});
+		final AutoRESTDocument document = document();
+		final WarmUp warmUp = new WarmUp(mock(Log.class));
+
+		final CompletableFuture<WarmUpSummary> first = CompletableFuture
+				.supplyAsync(() -> warmUp.warmUp(autoRESTJDBC, document, WarmUp.SLICE_MILLIS));
+		assertTrue(priming.await(5, TimeUnit.SECONDS));
+		// The second check resolves what is left and is answered while the first is still resolving its resource
+		final WarmUpSummary summary = warmUp.warmUp(autoRESTJDBC, document, WarmUp.SLICE_MILLIS);
+		assertFalse(summary.isFinished());
+		assertFalse(first.isDone());
+
+		release.countDown();
+		assertSame(summary, first.get());
+		assertTrue(summary.isFinished());
+		assertTrue(summary.isHealthy());
+	}
+}